@@ -0,0 +1,118 @@
+package benchmarks;
+
+import java.io.File;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import GUIs.FileTableModel;
+import enumerations.OSPath;
+import interfaces.Search;
+import tasks.*;
+
+/**
+ * Benchmarks the hot paths of the searcher against generated fixture trees.
+ *
+ * <pre>
+ * java -cp bin benchmarks.Benchmarks [--sizes 10000,100000,1000000] [--fixtures DIR]
+ *                                     [--out bench-results.json] [--warmup 2] [--iterations 5]
+ * </pre>
+ *
+ * Covered paths: the {@link FileEditor} scan, {@link Finder#getSingleFile}, the
+ * {@link Deleter} walk and filter chain (as a dry run), appending result rows to
+ * {@link FileTableModel}, {@link NameTable#search} while a keyword is typed one
+ * character at a time, and {@link Search#toList} for every {@link Search.ListType}.
+ * {@link FileEditor} and {@link Deleter} resolve their root from {@link OSPath}, so
+ * {@code user.home} is pointed at each fixture while it is measured.
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		int[] sizes = Arrays.stream(options.getOrDefault("sizes", "10000,100000,1000000").split(","))
+				.mapToInt(Integer::parseInt).toArray();
+		Path fixtures = Paths.get(options.getOrDefault("fixtures",
+				Paths.get(System.getProperty("java.io.tmpdir"), "filesearcher-bench").toString()));
+		Harness harness = new Harness(Integer.parseInt(options.getOrDefault("warmup", "2")),
+				Integer.parseInt(options.getOrDefault("iterations", "5")));
+
+		for (int size : sizes) {
+			Path root = FixtureTree.ensure(fixtures, size);
+			run(harness, root, size);
+		}
+		harness.write(Paths.get(options.getOrDefault("out", "bench-results.json")));
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void run(Harness harness, Path root, int size) throws Exception {
+		System.setProperty("user.home", root.toString());
+		List<File> files = TreeWalker.collect(root, p -> true).stream().map(Path::toFile)
+				.collect(Collectors.toList());
+		Finder finder = new Finder(files);
+
+		harness.measure("FileEditor.Edit", size, () -> new FileEditor(FixtureTree.KEYWORD, OSPath.USERS).call());
+
+		harness.measure("Finder.getSingleFile", size, () -> finder.getSingleFile(files, FixtureTree.KEYWORD).size());
+
+		harness.measure("Deleter.filter", size, () -> {
+			// A dry run walks and filters exactly as a real deletion would, without deleting.
+			Deleter deleter = new Deleter("report_\\d+\\.txt$", OSPath.USERS, null, false, true);
+			deleter.run();
+			return deleter.getSummary().getDeleted();
+		});
+
+		List<FileTableModel.Row> rows = files.stream()
+				.map(file -> new FileTableModel.Row(file.getName(), 0, file.getPath()))
+				.collect(Collectors.toList());
+		harness.measure("FileTableModel.addRows", size, () -> {
+			FileTableModel model = new FileTableModel();
+			for (int from = 0; from < rows.size(); from += 512) {
+				model.addRows(rows.subList(from, Math.min(rows.size(), from + 512)));
+			}
+			return model.getRowCount();
+		});
+
+		harness.measure("FileTableModel.removeRows", size, () -> {
+			FileTableModel model = new FileTableModel();
+			model.addRows(rows);
+			// Every tenth row, as one batch, like deleting a large selection.
+			model.removeRows(IntStream.range(0, rows.size() / 10).map(i -> i * 9).toArray());
+			return model.getRowCount();
+		});
+
+		harness.measure("TopFiles.largest", size,
+				() -> new TopFiles(List.of(root), record -> true, TopFiles.Order.LARGEST, 100).call().size());
+
+		harness.measure("FileSearch.stream", size, () -> {
+			try (Stream<FileRecord> stream = new FileSearch(root, record -> true).stream()) {
+				return (int) stream.count();
+			}
+		});
+
+		NameTable table = NameTable.load(root, PruneRules.NONE, null);
+		harness.measure("NameTable.search", size, () -> {
+			NameTable.Matches matches = null;
+			for (int end = 1; end <= FixtureTree.KEYWORD.length(); end++) {
+				matches = table.search(FixtureTree.KEYWORD.substring(0, end), matches, () -> false);
+			}
+			return matches.size();
+		});
+
+		for (Search.ListType type : Search.ListType.values()) {
+			harness.measure("Search.toList." + type, size, () -> finder.toList(files, type).size());
+		}
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		return options;
+	}
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+ * Generates and caches deterministic directory trees used as benchmark fixtures.
+ * Files are spread 100 per directory under two levels of 100 directories each, and
+ * one file in every {@value #MATCH_EVERY} carries the keyword {@value #KEYWORD} so
+ * that searches return a predictable number of hits.
+ */
+public final class FixtureTree {
+
+	/** Keyword present in the matching fraction of generated file names. */
+	public static final String KEYWORD = "report";
+
+	/** One file out of this many contains {@link #KEYWORD}. */
+	public static final int MATCH_EVERY = 100;
+
+	private static final int FILES_PER_DIRECTORY = 100;
+	private static final String[] EXTENSIONS = { ".txt", ".java", ".class", ".png", ".log", ".json" };
+
+	private FixtureTree() {
+	}
+
+	/**
+	 * Returns a fixture with {@code files} files below {@code base}, generating it on first use.
+	 *
+	 * @param base  Directory holding all fixtures.
+	 * @param files Number of files in the fixture.
+	 * @return The fixture root.
+	 * @throws IOException If the fixture cannot be written.
+	 */
+	public static Path ensure(Path base, int files) throws IOException {
+		Path root = base.resolve("tree-" + files);
+		Path marker = root.resolve(".complete");
+		if (Files.exists(marker)) {
+			return root;
+		}
+
+		System.err.printf("Generating fixture of %,d files in %s%n", files, root);
+		for (int i = 0; i < files; i++) {
+			int directory = i / FILES_PER_DIRECTORY;
+			Path parent = root.resolve(String.format("d%03d", directory / 100))
+					.resolve(String.format("d%03d", directory % 100));
+			if (i % FILES_PER_DIRECTORY == 0) {
+				Files.createDirectories(parent);
+			}
+			String name = (i % MATCH_EVERY == 0 ? "Quarterly_Report_" : "file_") + i
+					+ EXTENSIONS[i % EXTENSIONS.length];
+			Path file = parent.resolve(name);
+			if (Files.notExists(file)) {
+				Files.write(file, new byte[i % 512]);
+			}
+		}
+		Files.createFile(marker);
+		return root;
+	}
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Minimal benchmark harness: runs each case for a number of warmup and measured
+ * iterations and collects per-iteration wall times. Results are written as a JSON
+ * array so separate runs can be compared by tools or diffed for regressions.
+ */
+public class Harness {
+
+	private final int warmup;
+	private final int iterations;
+	private final List<String> results = new ArrayList<>();
+
+	/** Sink for benchmark return values so the work cannot be optimised away. */
+	private long blackhole;
+
+	/**
+	 * A benchmarked operation; the returned value is consumed by the harness.
+	 */
+	@FunctionalInterface
+	public interface Case {
+		long run() throws Exception;
+	}
+
+	/**
+	 * @param warmup     Iterations run before measuring.
+	 * @param iterations Measured iterations.
+	 */
+	public Harness(int warmup, int iterations) {
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Measures one case and records its statistics.
+	 *
+	 * @param name  Benchmark name.
+	 * @param files Number of files in the fixture the case runs against.
+	 * @param work  The operation to measure.
+	 * @throws Exception If the operation fails.
+	 */
+	public void measure(String name, int files, Case work) throws Exception {
+		for (int i = 0; i < warmup; i++) {
+			blackhole += work.run();
+		}
+		double[] millis = new double[iterations];
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			blackhole += work.run();
+			millis[i] = (System.nanoTime() - start) / 1e6;
+		}
+
+		DoubleSummaryStatistics stats = Arrays.stream(millis).summaryStatistics();
+		double variance = Arrays.stream(millis).map(m -> (m - stats.getAverage()) * (m - stats.getAverage())).sum()
+				/ Math.max(1, iterations - 1);
+		String json = String.format(Locale.ROOT,
+				"{\"benchmark\":\"%s\",\"files\":%d,\"iterations\":%d,\"meanMs\":%.3f,\"minMs\":%.3f,"
+						+ "\"maxMs\":%.3f,\"stddevMs\":%.3f,\"nsPerFile\":%.2f}",
+				name, files, iterations, stats.getAverage(), stats.getMin(), stats.getMax(), Math.sqrt(variance),
+				stats.getAverage() * 1e6 / files);
+		results.add(json);
+		System.out.println(json);
+	}
+
+	/**
+	 * Writes all recorded results as a JSON array.
+	 *
+	 * @param output The file to write.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void write(Path output) throws IOException {
+		Files.writeString(output, "[\n  " + String.join(",\n  ", results) + "\n]\n");
+		System.err.println("Results written to " + output.toAbsolutePath() + " (checksum " + blackhole + ")");
+	}
+}
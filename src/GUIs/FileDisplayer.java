@@ -6,9 +6,9 @@ import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.logging.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.awt.event.*;
 import javax.swing.*;
+import javax.swing.event.*;
 import java.util.List;
 
 import enumerations.OSPath;
@@ -19,25 +19,29 @@ import tasks.*;
 /**
  * A Swing-based GUI that displays files matching a given pattern in a specific OS path.
  * Users can interactively delete files or initiate a batch deletion using a pattern.
+ * Clicking a column header sorts the results, and the filter field narrows them by
+ * name, both inside the {@link FileTableModel} without copying the results.
  */
 public class FileDisplayer extends JFrame {
 
 	private static final long serialVersionUID = 1L;
 	private static final Logger LOGGER = Logger.getLogger(FileDisplayer.class.getName());
 
-	private final LinkedList<Object[]> fileTable = new LinkedList<>();
+	private final FileTableModel model = new FileTableModel();
 	private JTable table;
 	private final Future<Integer> assignment;
 	private final JCheckBox useBatchDeleter = new JCheckBox("Use Batch Pattern Deleter");
+	private final JProgressBar progressBar = new JProgressBar();
+	private final JButton cancelButton = new JButton("Cancel");
+	private final JTextField filterField = new JTextField();
 
 	private static final WorkingThreadFactory NFactory = new NormalFactory("Search Factory");
 	private static final ExecutorService processor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
-										      new NormalFactory("Search Factory"));
-
-	private static final String[] TITLES = { "Name", "Size", "Path" };
+										      NFactory);
 
 	/**
 	 * Constructs the FileDisplayer GUI and begins file scanning using FileEditor.
+	 * The window opens immediately and rows are appended while the scan runs.
 	 *
 	 * @param selection The OSPath enum indicating which base directory to search.
 	 * @param pattern   The file name pattern to search for.
@@ -46,55 +50,73 @@ public class FileDisplayer extends JFrame {
 		long startTime = System.currentTimeMillis();
 		LOGGER.info(() -> String.format("Displaying files in [%s] containing the keyword [%s]", selection, pattern));
 
-		HashSet<File> initialFiles = initializeFiles(selection.toPath());
-		FileEditor editor = new FileEditor(initialFiles, pattern, selection);
-
-		assignment = processSelection(editor);
-		shutdownAndAwait(processor);
-
-		LOGGER.info(() -> processor.isShutdown() && processor.isTerminated()
-				? "Thread pool successfully shut down."
-				: "Thread pool failed to shut down properly.");
-
-		initializeGUI(selection, pattern, startTime);
+		SearchWorker worker = new SearchWorker(selection, pattern, startTime);
+		initializeGUI(selection, worker);
+		assignment = processSelection(worker);
 	}
 
 	/**
-	 * Submits a file scanning task and collects results into the fileTable.
+	 * Submits a file scanning task; matches are published into the table model in batches as they are found.
 	 *
-	 * @param editor A FileEditor instance that performs the file scan.
+	 * @param worker The worker that runs the FileEditor scan.
 	 * @return Future representing the task.
 	 */
-	private Future<Integer> processSelection(FileEditor editor) {
-		try {
-			var start = System.currentTimeMillis();
-			var future = processor.submit(editor);
-			var result = future.get(3500, TimeUnit.MILLISECONDS);
-			LOGGER.info(() -> String.format("Processed %s in %d ms, found %d files.", editor.getPathname(),
-					System.currentTimeMillis() - start, result));
-			editor.getFinalFiles().forEach(this::addData);
-			return future;
-		} catch (TimeoutException | InterruptedException | ExecutionException e) {
-			LOGGER.log(Level.SEVERE, "Error processing files.", e);
-			throw new RuntimeException(e);
-		}
+	private Future<Integer> processSelection(SearchWorker worker) {
+		processor.execute(NFactory.instrument(worker));
+		return worker;
 	}
 
 	/**
-	 * Builds and shows the GUI window, including the file table and delete controls.
+	 * Builds and shows the GUI window, including the progress bar, the file table and delete controls.
 	 *
 	 * @param selection The OSPath enum used to show which directory was scanned.
-	 * @param pattern   The pattern used for scanning.
-	 * @param startTime The system timestamp when scanning started.
+	 * @param worker    The search whose progress is shown and which Cancel stops.
 	 */
-	private void initializeGUI(OSPath selection, String pattern, long startTime) {
+	private void initializeGUI(OSPath selection, SearchWorker worker) {
 		setTitle(String.format("Found Files in %s", selection));
 		setSize(500, 500);
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		setLayout(new BorderLayout());
 
-		var rows = to2DArray(fileTable);
-		table = new JTable(rows, TITLES);
+		JPanel topPanel = new JPanel(new BorderLayout());
+		progressBar.setIndeterminate(true);
+		progressBar.setStringPainted(true);
+		progressBar.setString("Searching...");
+		topPanel.add(progressBar, BorderLayout.CENTER);
+		cancelButton.addActionListener(e -> worker.cancelSearch());
+		topPanel.add(cancelButton, BorderLayout.EAST);
+		JPanel filterPanel = new JPanel(new BorderLayout());
+		filterPanel.add(new JLabel("Filter: "), BorderLayout.WEST);
+		filterPanel.add(filterField, BorderLayout.CENTER);
+		filterField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				model.setFilter(filterField.getText());
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				model.setFilter(filterField.getText());
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				model.setFilter(filterField.getText());
+			}
+		});
+		topPanel.add(filterPanel, BorderLayout.SOUTH);
+		add(topPanel, BorderLayout.NORTH);
+
+		table = new JTable(model);
+		table.getTableHeader().addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int column = table.columnAtPoint(e.getPoint());
+				if (column >= 0) {
+					model.toggleSort(table.convertColumnIndexToModel(column));
+				}
+			}
+		});
 		add(new JScrollPane(table), BorderLayout.CENTER);
 
 		JPanel bottomPanel = new JPanel(new BorderLayout());
@@ -106,29 +128,6 @@ public class FileDisplayer extends JFrame {
 		add(bottomPanel, BorderLayout.SOUTH);
 
 		setVisible(true);
-		LOGGER.info(() -> String.format("Total time to find files: %d milliseconds.",
-				System.currentTimeMillis() - startTime));
-	}
-
-	/**
-	 * Converts a list of file metadata arrays into a 2D array suitable for JTable.
-	 *
-	 * @param data The file metadata list.
-	 * @return A 2D Object array representing table rows.
-	 */
-	private Object[][] to2DArray(LinkedList<Object[]> data) {
-		return data.toArray(new Object[0][0]);
-	}
-
-	/**
-	 * Adds a file's metadata to the table.
-	 *
-	 * @param file The file to include.
-	 */
-	private void addData(File file) {
-		var size = String.format("%d BYTES", file.length());
-		var data = new Object[] { file.getName(), size, file.getAbsolutePath() };
-		fileTable.add(data);
 	}
 
 	/**
@@ -145,66 +144,131 @@ public class FileDisplayer extends JFrame {
 			String pattern = JOptionPane.showInputDialog(this, "Enter pattern to match for batch deletion:");
 			if (pattern != null && !pattern.trim().isEmpty()) {
 				ExecutorService exec = Executors.newSingleThreadExecutor();
-				exec.submit(new Deleter(pattern, OSPath.USERS, exec));
-				JOptionPane.showMessageDialog(this, "Batch deletion initiated using pattern: " + pattern);
+				Deleter plan = new Deleter(pattern, OSPath.USERS, exec, false, true);
+				exec.submit(() -> {
+					plan.run();
+					SwingUtilities.invokeLater(() -> confirmBatchDeletion(pattern, plan.getSummary()));
+				});
+				JOptionPane.showMessageDialog(this, "Planning batch deletion using pattern: " + pattern);
 			} else {
 				JOptionPane.showMessageDialog(this, "No valid pattern provided.");
 			}
 			return;
 		}
 
-		List<Integer> rowsToRemove = new ArrayList<>();
+		int[] rowsToRemove = new int[selectedRows.length];
+		List<Path> deleted = new ArrayList<>();
 		for (int row : selectedRows) {
-			String path = (String) table.getValueAt(row, 2);
+			String path = model.getPath(row);
 			try {
 				Files.deleteIfExists(Path.of(path));
 				LOGGER.info("Deleted file: " + path);
-				rowsToRemove.add(row);
+				rowsToRemove[deleted.size()] = row;
+				deleted.add(Path.of(path));
 			} catch (IOException ex) {
 				LOGGER.log(Level.WARNING, "Failed to delete: " + path, ex);
 			}
 		}
 
-		rowsToRemove.stream().sorted(Comparator.reverseOrder()).forEach(index -> {
-			fileTable.remove(index);
-		});
-		table.setModel(new javax.swing.table.DefaultTableModel(to2DArray(fileTable), TITLES));
+		// Updating the indexes waits for their locks, so it is kept off the event dispatch thread.
+		processor.execute(() -> FilenameIndex.forget(deleted));
+		model.removeRows(Arrays.copyOf(rowsToRemove, deleted.size()));
 		JOptionPane.showMessageDialog(this, "Selected files deleted.");
 	}
 
 	/**
-	 * Scans a directory recursively to get all regular files.
+	 * Shows the dry-run totals of a batch deletion and, if confirmed, runs it for real.
 	 *
-	 * @param path A string path to the root directory.
-	 * @return A set of discovered files.
+	 * @param pattern The batch deletion pattern.
+	 * @param plan    The summary of the dry run.
 	 */
-	private static HashSet<File> initializeFiles(String path) {
-		try {
-			Path basePath = Paths.get(path);
-			try (Stream<Path> stream = Files.walk(basePath)) {
-				return stream.filter(Files::isRegularFile).map(Path::toFile)
-						.collect(Collectors.toCollection(HashSet::new));
-			}
-		} catch (IOException e) {
-			LOGGER.log(Level.WARNING, "Failed to load initial files from: " + path, e);
-			return new HashSet<>();
+	private void confirmBatchDeletion(String pattern, DeleteSummary plan) {
+		int choice = JOptionPane.showConfirmDialog(this, plan + ".\nProceed with deleting files matching " + pattern + "?",
+				"Confirm Batch Deletion", JOptionPane.YES_NO_OPTION);
+		if (choice != JOptionPane.YES_OPTION) {
+			return;
 		}
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		Deleter deleter = new Deleter(pattern, OSPath.USERS, exec);
+		exec.submit(() -> {
+			deleter.run();
+			SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, deleter.getSummary() + "."));
+		});
 	}
 
 	/**
-	 * Gracefully shuts down the given ExecutorService.
-	 *
-	 * @param pool The executor to shutdown.
+	 * Runs a {@link FileEditor} scan off the event dispatch thread and publishes each
+	 * match as a table row; Swing coalesces the published rows into batches. Progress
+	 * reports from the scan are forwarded to the progress bar. Repeated and narrowing
+	 * searches are answered from the shared {@link QueryCache}.
 	 */
-	private void shutdownAndAwait(ExecutorService pool) {
-		pool.shutdown();
-		try {
-			if (!pool.awaitTermination(3500, TimeUnit.MILLISECONDS)) {
-				pool.shutdownNow();
+	private final class SearchWorker extends SwingWorker<Integer, FileTableModel.Row> {
+
+		private final FileEditor editor;
+		private final long startTime;
+
+		SearchWorker(OSPath selection, String pattern, long startTime) {
+			this.editor = new FileEditor(pattern, selection, this::addData, true);
+			editor.setCache(QueryCache.shared());
+			this.startTime = startTime;
+			editor.addListener(progress -> {
+				String status = progress.toString();
+				SwingUtilities.invokeLater(() -> progressBar.setString(status));
+			});
+		}
+
+		/**
+		 * Stops the walk cooperatively; rows found so far stay in the table.
+		 */
+		void cancelSearch() {
+			cancelButton.setEnabled(false);
+			editor.cancel();
+		}
+
+		@Override
+		protected Integer doInBackground() {
+			return editor.call();
+		}
+
+		/**
+		 * Builds a row for a match from the attributes read during the scan. Called
+		 * concurrently by the scan workers.
+		 *
+		 * @param record The file to include.
+		 */
+		private void addData(FileRecord record) {
+			publish(new FileTableModel.Row(record.getName(), record.getSize(),
+					record.getPath().toAbsolutePath().toString()));
+		}
+
+		@Override
+		protected void process(List<FileTableModel.Row> rows) {
+			model.addRows(rows);
+		}
+
+		@Override
+		protected void done() {
+			var progress = editor.getProgress();
+			progressBar.setIndeterminate(false);
+			progressBar.setValue(progressBar.getMaximum());
+			cancelButton.setEnabled(false);
+			try {
+				var result = get();
+				progressBar.setString(String.format("%s: %d matches, %s",
+						progress.isCancelled() ? "Cancelled" : "Done", result, progress));
+				LOGGER.info(() -> String.format("Processed %s in %d ms, found %d files. Query cache: %s.",
+						editor.getPathname(), System.currentTimeMillis() - startTime, result, QueryCache.shared()));
+				if (progress.getErrorCount() > 0) {
+					List<ScanError> errors = progress.getErrors();
+					progressBar.setToolTipText(errors.isEmpty() ? null : "First unreadable entry: " + errors.get(0));
+					LOGGER.warning(() -> String.format("Skipped %d unreadable entries: %s", progress.getErrorCount(),
+							progress.getErrors()));
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				progressBar.setString("Failed: " + progress);
+				LOGGER.log(Level.SEVERE, "Error processing files.", e);
+				JOptionPane.showMessageDialog(FileDisplayer.this, "Error processing files: " + e.getMessage());
 			}
-		} catch (InterruptedException e) {
-			pool.shutdownNow();
-			Thread.currentThread().interrupt();
 		}
 	}
 }
@@ -0,0 +1,417 @@
+package GUIs;
+
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+import javax.swing.table.AbstractTableModel;
+
+import tasks.NameMatcher;
+
+/**
+ * A table model holding search results in growable column arrays. Rows are appended
+ * in batches while a scan is running, and each batch fires a single rows-inserted
+ * event, so the table shows results as they arrive without ever copying the data set.
+ *
+ * Every result keeps the id it was appended under. The rows shown are an order over
+ * those ids, sorted on request, and a bit per position tells whether it is shown: it
+ * is cleared when the row is removed or does not pass the filter. A Fenwick tree
+ * over these bits maps a table row to its position in O(log n), so removing k rows
+ * costs O(k log n) and fires one rows-deleted event per contiguous run of removed rows,
+ * and narrowing the filter only re-tests the rows still shown. Removed results are
+ * tombstoned and only compacted away once they make up half of the storage.
+ *
+ * All methods must be called on the Swing event dispatch thread.
+ */
+public class FileTableModel extends AbstractTableModel {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String[] TITLES = { "Name", "Size", "Path" };
+
+	/** Most rows-deleted events fired for one change before a single data-changed event is cheaper. */
+	private static final int MAX_RUN_EVENTS = 64;
+
+	/** Column storage by id. */
+	private String[] names = new String[256];
+	private long[] sizes = new long[256];
+	private String[] paths = new String[256];
+	private int ids;
+
+	/** Ids removed by {@link #removeRows(int[])}; their column entries are cleared. */
+	private final BitSet removed = new BitSet();
+	private int removedCount;
+
+	/** The ids in display order, and whether the id at each position is shown. */
+	private int[] order = new int[256];
+	private final BitSet shown = new BitSet();
+	private int positions;
+	private int visible;
+
+	/** Fenwick tree over {@link #shown}, 1-based. */
+	private int[] tree = new int[257];
+
+	private int sortColumn = -1;
+	private boolean ascending = true;
+
+	/** The filter keyword, and the matcher built from it; {@code null} shows every row. */
+	private String filter;
+	private transient NameMatcher matcher;
+
+	/**
+	 * One search result as produced by a scan worker.
+	 */
+	public static final class Row {
+
+		private final String name;
+		private final long length;
+		private final String path;
+
+		/**
+		 * @param name   The file name.
+		 * @param length The file size in bytes.
+		 * @param path   The absolute file path.
+		 */
+		public Row(String name, long length, String path) {
+			this.name = name;
+			this.length = length;
+			this.path = path;
+		}
+	}
+
+	/**
+	 * Appends a batch of rows and notifies the table once. While the model is sorted,
+	 * the new rows are shown below the sorted ones until the next {@link #sort(int, boolean)}.
+	 *
+	 * @param rows The rows to append.
+	 */
+	public void addRows(List<Row> rows) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		ensureCapacity(ids + rows.size());
+		ensurePositions(positions + rows.size());
+		int first = visible;
+		for (Row row : rows) {
+			names[ids] = row.name;
+			sizes[ids] = row.length;
+			paths[ids] = row.path;
+			order[positions] = ids;
+			if (passes(ids)) {
+				shown.set(positions);
+				add(positions, 1);
+				visible++;
+			}
+			ids++;
+			positions++;
+		}
+		if (visible > first) {
+			fireTableRowsInserted(first, visible - 1);
+		}
+	}
+
+	/**
+	 * Removes the given rows, firing one rows-deleted event per run of adjacent rows.
+	 *
+	 * @param rows Rows of the table, in any order; duplicates are ignored.
+	 */
+	public void removeRows(int[] rows) {
+		int[] sorted = Arrays.stream(rows).filter(row -> row >= 0 && row < visible).sorted().distinct().toArray();
+		if (sorted.length == 0) {
+			return;
+		}
+		// Resolve every row before any of them is hidden, since hiding shifts the rows below.
+		int[] found = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			found[i] = position(sorted[i]);
+		}
+		for (int position : found) {
+			int id = order[position];
+			shown.clear(position);
+			add(position, -1);
+			removed.set(id);
+			names[id] = null;
+			paths[id] = null;
+		}
+		visible -= sorted.length;
+		removedCount += sorted.length;
+		fireRemoved(sorted);
+		if (removedCount > ids / 2) {
+			compact();
+		}
+	}
+
+	/**
+	 * Sorts the rows by a column, keeping equal rows in their current relative order.
+	 * Names and paths are compared ignoring case.
+	 *
+	 * @param column    The column to sort by.
+	 * @param ascending {@code true} for ascending order.
+	 */
+	public void sort(int column, boolean ascending) {
+		IntBinaryOperator compare = switch (column) {
+		case 0 -> (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(names[a], names[b]);
+		case 1 -> (a, b) -> Long.compare(sizes[a], sizes[b]);
+		default -> (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(paths[a], paths[b]);
+		};
+		IntBinaryOperator directed = ascending ? compare : (a, b) -> compare.applyAsInt(b, a);
+		int[] live = new int[ids - removedCount];
+		int n = 0;
+		for (int position = 0; position < positions; position++) {
+			if (!removed.get(order[position])) {
+				live[n++] = order[position];
+			}
+		}
+		mergeSort(live, new int[n], 0, n, directed);
+		System.arraycopy(live, 0, order, 0, n);
+		positions = n;
+		sortColumn = column;
+		this.ascending = ascending;
+		refilter();
+		fireTableDataChanged();
+	}
+
+	/**
+	 * Sorts by {@code column}, ascending unless it is already the ascending sort column.
+	 *
+	 * @param column The column whose header was clicked.
+	 */
+	public void toggleSort(int column) {
+		sort(column, column != sortColumn || !ascending);
+	}
+
+	/**
+	 * Shows only the rows whose name contains {@code keyword}, ignoring case. A keyword
+	 * that contains the current one only re-tests the rows still shown and fires
+	 * rows-deleted events for those it hides; any other change redraws the table.
+	 *
+	 * @param keyword The keyword; empty or {@code null} to show every row.
+	 */
+	public void setFilter(String keyword) {
+		String next = keyword == null || keyword.isEmpty() ? null : keyword;
+		if (Objects.equals(next, filter)) {
+			return;
+		}
+		boolean narrowing = next != null && filter != null
+				&& next.toLowerCase(Locale.ROOT).contains(filter.toLowerCase(Locale.ROOT));
+		filter = next;
+		matcher = next == null ? null : NameMatcher.substring(next);
+		if (!narrowing) {
+			refilter();
+			fireTableDataChanged();
+			return;
+		}
+
+		int[] hidden = new int[visible];
+		int count = 0;
+		int row = 0;
+		for (int position = shown.nextSetBit(0); position >= 0; position = shown.nextSetBit(position + 1)) {
+			if (!matcher.matches(names[order[position]])) {
+				shown.clear(position);
+				hidden[count++] = row;
+			}
+			row++;
+		}
+		if (count > 0) {
+			visible -= count;
+			rebuildTree();
+			fireRemoved(Arrays.copyOf(hidden, count));
+		}
+	}
+
+	/**
+	 * @param row The table row.
+	 * @return The absolute path shown in that row.
+	 */
+	public String getPath(int row) {
+		return paths[order[position(row)]];
+	}
+
+	@Override
+	public int getRowCount() {
+		return visible;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return TITLES.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return TITLES[column];
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		int id = order[position(row)];
+		switch (column) {
+		case 0:
+			return names[id];
+		case 1:
+			return String.format("%d BYTES", sizes[id]);
+		case 2:
+			return paths[id];
+		default:
+			return null;
+		}
+	}
+
+	private boolean passes(int id) {
+		return !removed.get(id) && (matcher == null || matcher.matches(names[id]));
+	}
+
+	/**
+	 * Recomputes which positions are shown under the current filter.
+	 */
+	private void refilter() {
+		shown.clear();
+		visible = 0;
+		for (int position = 0; position < positions; position++) {
+			if (passes(order[position])) {
+				shown.set(position);
+				visible++;
+			}
+		}
+		rebuildTree();
+	}
+
+	/**
+	 * Fires rows-deleted events for {@code rows}, ascending rows as they were numbered
+	 * before the removal, bottom run first so each event's indexes are still valid.
+	 */
+	private void fireRemoved(int[] rows) {
+		int runs = 1;
+		for (int i = 1; i < rows.length; i++) {
+			if (rows[i] != rows[i - 1] + 1) {
+				runs++;
+			}
+		}
+		if (runs > MAX_RUN_EVENTS) {
+			fireTableDataChanged();
+			return;
+		}
+		int last = rows.length - 1;
+		for (int i = rows.length - 1; i >= 0; i--) {
+			if (i == 0 || rows[i - 1] != rows[i] - 1) {
+				fireTableRowsDeleted(rows[i], rows[last]);
+				last = i - 1;
+			}
+		}
+	}
+
+	/**
+	 * Drops the tombstoned results from the storage. Table rows do not change, so no
+	 * event is fired.
+	 */
+	private void compact() {
+		int[] moved = new int[ids];
+		int kept = 0;
+		for (int id = 0; id < ids; id++) {
+			if (!removed.get(id)) {
+				names[kept] = names[id];
+				sizes[kept] = sizes[id];
+				paths[kept] = paths[id];
+				moved[id] = kept++;
+			}
+		}
+		Arrays.fill(names, kept, ids, null);
+		Arrays.fill(paths, kept, ids, null);
+
+		BitSet keptShown = new BitSet();
+		int next = 0;
+		for (int position = 0; position < positions; position++) {
+			int id = order[position];
+			if (!removed.get(id)) {
+				if (shown.get(position)) {
+					keptShown.set(next);
+				}
+				order[next++] = moved[id];
+			}
+		}
+		shown.clear();
+		shown.or(keptShown);
+		positions = next;
+		ids = kept;
+		removed.clear();
+		removedCount = 0;
+		rebuildTree();
+	}
+
+	/**
+	 * Returns the position of the shown row {@code row}: the position holding the
+	 * (row + 1)-th set bit of {@link #shown}.
+	 */
+	private int position(int row) {
+		int position = 0;
+		int remaining = row + 1;
+		for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+			int next = position + step;
+			if (next < tree.length && tree[next] < remaining) {
+				position = next;
+				remaining -= tree[next];
+			}
+		}
+		return position;
+	}
+
+	private void add(int position, int delta) {
+		for (int i = position + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	private void rebuildTree() {
+		Arrays.fill(tree, 0);
+		for (int position = shown.nextSetBit(0); position >= 0 && position < tree.length - 1;
+				position = shown.nextSetBit(position + 1)) {
+			tree[position + 1] = 1;
+		}
+		for (int i = 1; i < tree.length; i++) {
+			int parent = i + (i & -i);
+			if (parent < tree.length) {
+				tree[parent] += tree[i];
+			}
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > names.length) {
+			int grown = Math.max(capacity, names.length * 2);
+			names = Arrays.copyOf(names, grown);
+			sizes = Arrays.copyOf(sizes, grown);
+			paths = Arrays.copyOf(paths, grown);
+		}
+	}
+
+	private void ensurePositions(int capacity) {
+		if (capacity > order.length) {
+			order = Arrays.copyOf(order, Math.max(capacity, order.length * 2));
+			tree = new int[order.length + 1];
+			rebuildTree();
+		}
+	}
+
+	/**
+	 * Stable merge sort of {@code ids[from, to)} by {@code compare}, without boxing.
+	 */
+	private static void mergeSort(int[] ids, int[] buffer, int from, int to, IntBinaryOperator compare) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(ids, buffer, from, middle, compare);
+		mergeSort(ids, buffer, middle, to, compare);
+		if (compare.applyAsInt(ids[middle - 1], ids[middle]) <= 0) {
+			return;
+		}
+		System.arraycopy(ids, from, buffer, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || left < middle && compare.applyAsInt(buffer[left], buffer[right]) <= 0) {
+				ids[i] = buffer[left++];
+			} else {
+				ids[i] = buffer[right++];
+			}
+		}
+	}
+}
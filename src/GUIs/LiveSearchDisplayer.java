@@ -0,0 +1,286 @@
+package GUIs;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.*;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+import enumerations.OSPath;
+import factory.*;
+import interfaces.*;
+import tasks.*;
+
+/**
+ * A Swing window for search-as-you-type. The selected path is loaded in the
+ * background into a {@link NameTable}; after that every keyword is answered from
+ * memory and shown in this one window instead of opening a new one per search.
+ * Each path is loaded with its {@link PruneRules#forPath(OSPath) prune rules}. Tables are
+ * kept by resolved root and rules, so paths naming the same directory share one, and
+ * switching back to a loaded root shows its table at once while it is reloaded.
+ *
+ * Keystrokes are debounced by {@code filesearcher.live.debounceMillis}. Each query
+ * supersedes the one before it: a running query notices within one chunk of names and
+ * is abandoned, and only the newest result ever reaches the table.
+ */
+public final class LiveSearchDisplayer extends JFrame {
+
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOGGER = Logger.getLogger(LiveSearchDisplayer.class.getName());
+
+	private static final int DEBOUNCE_MILLIS = Integer.getInteger("filesearcher.live.debounceMillis", 30);
+
+	private static final WorkingThreadFactory DFactory = new DaemonFactory("Live Search Factory");
+
+	/** Runs queries and installs loaded tables one at a time, so a query always sees the latest table. */
+	private final transient ExecutorService processor = Executors.newSingleThreadExecutor(DFactory);
+
+	/** Walks the roots being loaded, so queries keep running against the current table meanwhile. */
+	private final transient ExecutorService loader = Executors.newSingleThreadExecutor(DFactory);
+
+	private final MatchTableModel model = new MatchTableModel();
+	private final JProgressBar progressBar = new JProgressBar();
+	private final javax.swing.Timer debounce;
+
+	/** Bumped by every query; a query started under an older value is stale. */
+	private final AtomicLong generation = new AtomicLong();
+
+	/** Bumped by every load; a load started under an older value is cancelled. */
+	private final AtomicLong loads = new AtomicLong();
+
+	/** The latest table of each resolved root and rules, so switching back is instant. Confined to {@link #processor}. */
+	private final transient Map<String, NameTable> tables = new HashMap<>();
+
+	/** The table being searched and its last matches. Confined to {@link #processor}. */
+	private transient NameTable table;
+	private transient NameTable.Matches last;
+
+	/** The most recent keyword typed; written on the event dispatch thread. */
+	private volatile String keyword = "";
+
+	private LiveSearchDisplayer() {
+		debounce = new javax.swing.Timer(DEBOUNCE_MILLIS, e -> submitQuery(keyword));
+		debounce.setRepeats(false);
+		initializeGUI();
+	}
+
+	/**
+	 * Opens a window and starts loading {@code selection}. Must be called on the event
+	 * dispatch thread.
+	 *
+	 * @param selection The path to search.
+	 * @return The window.
+	 */
+	public static LiveSearchDisplayer open(OSPath selection) {
+		LiveSearchDisplayer window = new LiveSearchDisplayer();
+		window.setVisible(true);
+		window.load(selection);
+		return window;
+	}
+
+	/**
+	 * Switches the window to another path. A root loaded before is searched right away
+	 * and reloaded in the background; any other root is searched once it is loaded.
+	 * Must be called on the event dispatch thread.
+	 *
+	 * @param selection The path to search.
+	 */
+	public void load(OSPath selection) {
+		setTitle(String.format("Search as you type in %s", selection));
+		long current = loads.incrementAndGet();
+		progressBar.setIndeterminate(true);
+		progressBar.setString("Loading " + selection + "...");
+		processor.execute(DFactory.instrument(() -> {
+			Path root = Paths.get(selection.toPath());
+			try {
+				root = root.toRealPath();
+			} catch (IOException e) {
+				// Keep the path as given; loading it reports the failure.
+			}
+			PruneRules rules = PruneRules.forPath(selection);
+			String key = root + (rules.isEmpty() ? "" : "\0" + rules);
+			NameTable cached = tables.get(key);
+			if (cached != null) {
+				install(cached, current);
+			}
+			Path resolved = root;
+			loader.execute(DFactory.instrument(() -> reload(selection, resolved, rules, key, cached != null, current)));
+		}));
+	}
+
+	/**
+	 * Walks {@code root} on the loader thread and hands the new table to the processor.
+	 * Progress is only shown when no earlier table of the root is being searched meanwhile.
+	 */
+	private void reload(OSPath selection, Path root, PruneRules rules, String key, boolean shown,
+			long current) {
+		if (loads.get() != current) {
+			return;
+		}
+		ScanProgress progress = new ScanProgress();
+		progress.addListener(report -> {
+			if (loads.get() != current) {
+				report.cancel();
+			}
+			if (!shown) {
+				String status = "Loading " + selection + ": " + report;
+				SwingUtilities.invokeLater(() -> progressBar.setString(status));
+			}
+		});
+		progress.start();
+		NameTable loaded;
+		try {
+			loaded = NameTable.load(root, rules, progress);
+		} catch (Exception e) {
+			LOGGER.log(Level.SEVERE, "Failed to load " + selection, e);
+			if (!shown) {
+				SwingUtilities.invokeLater(() -> progressBar.setString("Failed to load " + selection));
+			}
+			return;
+		} finally {
+			progress.finish();
+		}
+		if (progress.isCancelled()) {
+			return;
+		}
+		LOGGER.info(() -> String.format("Loaded %d names under %s in %d ms, %.1f MB.", loaded.size(),
+				loaded.getRoot(), progress.getElapsedMillis(), loaded.memoryBytes() / 1e6));
+		processor.execute(DFactory.instrument(() -> {
+			tables.put(key, loaded);
+			install(loaded, current);
+		}));
+	}
+
+	/**
+	 * Makes {@code loaded} the searched table and repeats the last query against it,
+	 * unless a newer load has started. Runs on the processor thread.
+	 */
+	private void install(NameTable loaded, long current) {
+		if (loads.get() != current) {
+			return;
+		}
+		table = loaded;
+		last = null;
+		query(keyword, generation.get());
+	}
+
+	/**
+	 * Schedules a search for {@code text} once typing pauses. Must be called on the
+	 * event dispatch thread.
+	 *
+	 * @param text The keyword typed so far.
+	 */
+	public void search(String text) {
+		keyword = text;
+		debounce.restart();
+	}
+
+	private void initializeGUI() {
+		setSize(600, 500);
+		setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		setLayout(new BorderLayout());
+
+		progressBar.setStringPainted(true);
+		add(progressBar, BorderLayout.NORTH);
+		add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+	}
+
+	/**
+	 * Starts a query, superseding any query still running.
+	 */
+	private void submitQuery(String text) {
+		long current = generation.incrementAndGet();
+		processor.execute(DFactory.instrument(() -> query(text, current)));
+	}
+
+	/**
+	 * Searches the current table on the processor thread and shows the result if no
+	 * newer load or query has started meanwhile.
+	 */
+	private void query(String text, long current) {
+		if (table == null) {
+			return;
+		}
+		long start = System.nanoTime();
+		NameTable.Matches matches = table.search(text, last, () -> generation.get() != current);
+		if (matches == null) {
+			return;
+		}
+		last = matches;
+		long micros = (System.nanoTime() - start) / 1000;
+		int total = table.size();
+		SwingUtilities.invokeLater(() -> {
+			if (generation.get() != current) {
+				return;
+			}
+			model.setMatches(matches);
+			progressBar.setIndeterminate(false);
+			progressBar.setValue(progressBar.getMaximum());
+			progressBar.setString(String.format("%,d of %,d files match [%s] (%.1f ms)", matches.size(), total, text,
+					micros / 1000.0));
+		});
+	}
+
+	@Override
+	public void dispose() {
+		debounce.stop();
+		generation.incrementAndGet();
+		loads.incrementAndGet();
+		processor.shutdownNow();
+		loader.shutdownNow();
+		super.dispose();
+	}
+
+	/**
+	 * A read-only table model over the matches of a {@link NameTable}. Rows are only
+	 * materialized when the table paints them, so replacing a million matches is one event.
+	 */
+	private static final class MatchTableModel extends AbstractTableModel {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final String[] TITLES = { "Name", "Size", "Path" };
+
+		private transient NameTable.Matches matches;
+
+		void setMatches(NameTable.Matches matches) {
+			this.matches = matches;
+			fireTableDataChanged();
+		}
+
+		@Override
+		public int getRowCount() {
+			return matches == null ? 0 : matches.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return TITLES.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return TITLES[column];
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			ResultStore records = matches.getTable().getRecords();
+			int id = matches.get(row);
+			switch (column) {
+			case 0:
+				return records.getName(id);
+			case 1:
+				return String.format("%d BYTES", records.getSize(id));
+			case 2:
+				return records.getPath(id).toAbsolutePath().toString();
+			default:
+				return null;
+			}
+		}
+	}
+}
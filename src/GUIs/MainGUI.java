@@ -3,12 +3,16 @@ package GUIs;
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
+import javax.swing.event.*;
 import enumerations.OSPath;
 
 /**
  * The {@code MainGUI} class provides a graphical user interface for selecting a file path
  * and entering a keyword to search for files in the specified path. The user can choose
  * between three predefined paths: Desktop, CF, or User.
+ *
+ * With "Search as you type" checked, the keyword is searched on every keystroke in a
+ * single {@link LiveSearchDisplayer} window instead of when the button is pressed.
  */
 public class MainGUI extends JFrame implements ActionListener {
 
@@ -19,6 +23,8 @@ public class MainGUI extends JFrame implements ActionListener {
 	private final JRadioButton cfButton;
 	private final JRadioButton userButton;
 	private final JTextField keywordField;
+	private final JCheckBox liveBox;
+	private LiveSearchDisplayer liveView;
 	private final JPanel textPanel;
 	private final JPanel radioPanel;
 	private final JPanel mainPanel;
@@ -44,6 +50,9 @@ public class MainGUI extends JFrame implements ActionListener {
 		group.add(desktopButton);
 		group.add(cfButton);
 		group.add(userButton);
+		desktopButton.addActionListener(e -> reloadLiveView());
+		cfButton.addActionListener(e -> reloadLiveView());
+		userButton.addActionListener(e -> reloadLiveView());
 
 		// Create panel for radio buttons
 		radioPanel = new JPanel();
@@ -57,13 +66,32 @@ public class MainGUI extends JFrame implements ActionListener {
 		keywordField = new JTextField(20);
 		displayButton = new JButton("Display Files");
 		displayButton.addActionListener(this);
+		liveBox = new JCheckBox("Search as you type");
+		liveBox.addActionListener(e -> toggleLiveView());
+		keywordField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				searchLive();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				searchLive();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				searchLive();
+			}
+		});
 
 		// Create panel for keyword input and button
 		textPanel = new JPanel();
-		textPanel.setLayout(new GridLayout(2, 1));
+		textPanel.setLayout(new GridLayout(3, 1));
 		textPanel.setBorder(BorderFactory.createTitledBorder("Enter Keyword"));
 		textPanel.add(keywordField);
 		textPanel.add(displayButton);
+		textPanel.add(liveBox);
 
 		// Combine panels into the main panel
 		mainPanel = new JPanel();
@@ -88,15 +116,73 @@ public class MainGUI extends JFrame implements ActionListener {
 	@Override
 	public void actionPerformed(ActionEvent e) {
 		String pattern = keywordField.getText();
+		OSPath selection = getSelectedPath();
+
+		if (selection != null) {
+			new FileDisplayer(selection, pattern);
+		} else {
+			JOptionPane.showMessageDialog(this, "Please select a path!", "Error", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	/**
+	 * Opens the search-as-you-type window for the selected path, or closes it when the
+	 * box is unchecked.
+	 */
+	private void toggleLiveView() {
+		if (!liveBox.isSelected()) {
+			if (liveView != null) {
+				liveView.dispose();
+				liveView = null;
+			}
+			return;
+		}
+		OSPath selection = getSelectedPath();
+		if (selection == null) {
+			liveBox.setSelected(false);
+			JOptionPane.showMessageDialog(this, "Please select a path!", "Error", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		liveView = LiveSearchDisplayer.open(selection);
+		liveView.search(keywordField.getText());
+	}
 
+	/**
+	 * Points an open search-as-you-type window at the newly selected path.
+	 */
+	private void reloadLiveView() {
+		OSPath selection = getSelectedPath();
+		if (liveView != null && selection != null) {
+			liveView.load(selection);
+		}
+	}
+
+	/**
+	 * Forwards the keyword to an open search-as-you-type window after every edit.
+	 */
+	private void searchLive() {
+		if (liveView != null) {
+			if (!liveView.isDisplayable()) {
+				// Closed by the user; stop forwarding keystrokes.
+				liveView = null;
+				liveBox.setSelected(false);
+				return;
+			}
+			liveView.search(keywordField.getText());
+		}
+	}
+
+	/**
+	 * @return The path of the selected radio button, or {@code null} if none is selected.
+	 */
+	private OSPath getSelectedPath() {
 		if (desktopButton.isSelected()) {
-			new FileDisplayer(OSPath.DESKTOP, pattern);
+			return OSPath.DESKTOP;
 		} else if (cfButton.isSelected()) {
-			new FileDisplayer(OSPath.CF, pattern);
+			return OSPath.CF;
 		} else if (userButton.isSelected()) {
-			new FileDisplayer(OSPath.USERS, pattern);
-		} else {
-			JOptionPane.showMessageDialog(this, "Please select a path!", "Error", JOptionPane.ERROR_MESSAGE);
+			return OSPath.USERS;
 		}
+		return null;
 	}
 }
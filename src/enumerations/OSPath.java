@@ -4,22 +4,32 @@ import java.nio.file.Paths;
 
 public enum OSPath {
 
-	USERS("", "Users"),
-	CF("", "Home"),
-	DESKTOP("Desktop", "Desktop");
+	USERS("", "Users", ".git/,node_modules/,.cache/,__pycache__/,/Library/Caches/"),
+	CF("", "Home", ".git/,node_modules/,.cache/,__pycache__/,/Library/Caches/"),
+	DESKTOP("Desktop", "Desktop", ".git/,node_modules/");
 
 	private final String relativePath;
 	private final String displayName;
+	private final String pruneSpec;
 
-	OSPath(String relativePath, String displayName) {
+	OSPath(String relativePath, String displayName, String pruneSpec) {
 		this.relativePath = relativePath;
 		this.displayName = displayName;
+		this.pruneSpec = pruneSpec;
 	}
 
 	public String toPath() {
 		return Paths.get(System.getProperty("user.home"), relativePath).toString();
 	}
 
+	/**
+	 * @return The default rules for subtrees skipped when searching this path, in the
+	 *         spec format of {@code tasks.PruneRules}.
+	 */
+	public String getPruneSpec() {
+		return pruneSpec;
+	}
+
 	@Override
 	public String toString() {
 		return displayName;
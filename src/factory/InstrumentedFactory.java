@@ -0,0 +1,61 @@
+package factory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import interfaces.*;
+
+/**
+ * Common base of the working thread factories. Thread numbering uses an atomic
+ * counter and every thread and instrumented task is recorded in a {@link ThreadMetrics}
+ * registry, so factories are safe to use from pools that grow concurrently.
+ */
+public abstract class InstrumentedFactory implements WorkingThreadFactory {
+
+	//Variables
+	private final AtomicInteger count = new AtomicInteger(1);
+	private final String FactoryName;
+	private final ThreadMetrics metrics = new ThreadMetrics();
+
+	private final String TYPE = this.getClass().getSimpleName();
+
+	//Constructors
+	protected InstrumentedFactory(String FactoryName) {
+		this.FactoryName = FactoryName;
+	}
+
+	//Abstract Methods
+	protected abstract Thread createThread(Runnable r, String name);
+
+	//Methods
+	@Override
+	public Thread newThread(Runnable r) {
+		String name = String.format("%s: Thread [%d]", FactoryName, count.getAndIncrement());
+		Thread t = createThread(metrics.trackThread(r), name);
+		metrics.threadCreated(t, r);
+		return t;
+	}
+
+	@Override
+	public Runnable instrument(Runnable task) {
+		return metrics.trackTask(task);
+	}
+
+	@Override
+	public void getInfo() {
+		System.out.printf("\n\t\t\t******** %s INFORMATION ********\n\n%s\n",
+				FactoryName.toUpperCase(), Info());
+	}
+
+	public String getName() {
+		return FactoryName;
+	}
+
+	public ThreadMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public String Info() {
+		return metrics.render(TYPE);
+	}
+
+}
@@ -1,64 +1,26 @@
 package factory;
 
-import java.util.*;
-import interfaces.*;
-
-public class PriorityFactory implements WorkingThreadFactory {
+public class PriorityFactory extends InstrumentedFactory {
 
 	//Variables
-	private int count;
-	private String FactoryName;
-	private List<String> info;
-	private int priority;
-	
-	private final String TYPE = this.getClass().getSimpleName();
-	
+	private final int priority;
+
 	//Constructors
 	public PriorityFactory(String FactoryName, int priority) {
-		count = 1;
-		this.FactoryName = FactoryName;
+		super(FactoryName);
 		this.priority = priority;
-		info = new ArrayList<String>();
-		
 	}
 
 	//Methods
 	@Override
-	public Thread newThread(Runnable r) {
-		String name = String.format("%s: Thread [%d]", FactoryName, count);
-		count++;
+	protected Thread createThread(Runnable r, String name) {
 		Thread t = new Thread(r, name);
-		String HEXI = Integer.toHexString(t.hashCode());
-		info.add(String.format("INFO: TYPE[%s], NAME[%s], ID [%d], HASHCODE [%s], "
-				+ "PRIORITY [%d], TASK [%s]\n"
-				,TYPE, t.getName(), t.getId(), HEXI, priority, 
-				r.getClass().getSimpleName().toString()));
+		t.setPriority(priority);
 		return t;
 	}
-	
-	@Override
-	public void getInfo() {
-		System.out.printf("\n\t\t\t******** %s INFORMATION ********\n\n%s\n",
-				FactoryName.toUpperCase(), Info());
-	}
-	
-	public String getName() {
-		return FactoryName;
-	}
-	
-	@Override 
-	public String Info() {
-		StringBuffer Sbuffer = new StringBuffer();
-		Iterator<String> it = info.iterator();
-		if(it.hasNext()) {
-			while(it.hasNext()) {
-				Sbuffer.append(it.next());
-			}
-		}else{
-			Sbuffer.append("\t\t\t\t\tNo Threads Made");
-		}
-		
-		return Sbuffer.toString();
+
+	public int getPriority() {
+		return priority;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,148 @@
+package factory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Lock-free metrics shared by a thread factory and the threads and tasks it creates.
+ * Counters are atomics or {@link LongAdder}s, and only the most recent threads are
+ * kept in a fixed-size ring, so recording never blocks and memory stays bounded.
+ * Nothing is formatted until {@link #render(String)} is called.
+ */
+public class ThreadMetrics {
+
+	/** Number of recently created threads kept for reporting. */
+	public static final int HISTORY = 64;
+
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicInteger live = new AtomicInteger();
+	private final AtomicInteger peak = new AtomicInteger();
+	private final LongAdder tasks = new LongAdder();
+	private final LongAdder runNanos = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final AtomicLong maxRunNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicReferenceArray<ThreadRecord> history = new AtomicReferenceArray<>(HISTORY);
+
+	/**
+	 * A thread as it was when created.
+	 */
+	private static final class ThreadRecord {
+
+		private final String name;
+		private final long id;
+		private final int hash;
+		private final int priority;
+		private final String task;
+
+		ThreadRecord(Thread thread, Runnable task) {
+			this.name = thread.getName();
+			this.id = thread.threadId();
+			this.hash = thread.hashCode();
+			this.priority = thread.getPriority();
+			this.task = task.getClass().getSimpleName();
+		}
+	}
+
+	/**
+	 * Records a newly created thread.
+	 *
+	 * @param thread The new thread.
+	 * @param task   The runnable it was created for.
+	 */
+	public void threadCreated(Thread thread, Runnable task) {
+		long index = created.getAndIncrement();
+		history.set((int) (index % HISTORY), new ThreadRecord(thread, task));
+	}
+
+	/**
+	 * Wraps a thread body so the live and peak thread counts follow it.
+	 *
+	 * @param body The runnable the thread executes.
+	 * @return The tracking runnable.
+	 */
+	public Runnable trackThread(Runnable body) {
+		return () -> {
+			peak.accumulateAndGet(live.incrementAndGet(), Math::max);
+			try {
+				body.run();
+			} finally {
+				live.decrementAndGet();
+			}
+		};
+	}
+
+	/**
+	 * Wraps a task at submission time so its queue wait and run time are recorded.
+	 *
+	 * @param task The task about to be queued.
+	 * @return The timing runnable.
+	 */
+	public Runnable trackTask(Runnable task) {
+		long queued = System.nanoTime();
+		return () -> {
+			long start = System.nanoTime();
+			record(waitNanos, maxWaitNanos, start - queued);
+			try {
+				task.run();
+			} finally {
+				tasks.increment();
+				record(runNanos, maxRunNanos, System.nanoTime() - start);
+			}
+		};
+	}
+
+	public long getCreated() {
+		return created.get();
+	}
+
+	public int getLive() {
+		return live.get();
+	}
+
+	public int getPeak() {
+		return peak.get();
+	}
+
+	public long getTasks() {
+		return tasks.sum();
+	}
+
+	/**
+	 * Formats the counters followed by the most recently created threads.
+	 *
+	 * @param type The factory type shown on each line.
+	 * @return The report.
+	 */
+	public String render(String type) {
+		long count = created.get();
+		if (count == 0) {
+			return "\t\t\t\t\tNo Threads Made";
+		}
+		long done = tasks.sum();
+		StringBuilder report = new StringBuilder(String.format(
+				"INFO: TYPE[%s], CREATED [%d], LIVE [%d], PEAK [%d], TASKS [%d], "
+						+ "AVG RUN [%d ms], MAX RUN [%d ms], AVG WAIT [%d ms], MAX WAIT [%d ms]\n",
+				type, count, live.get(), peak.get(), done, millis(done == 0 ? 0 : runNanos.sum() / done),
+				millis(maxRunNanos.get()), millis(done == 0 ? 0 : waitNanos.sum() / done), millis(maxWaitNanos.get())));
+
+		for (long i = Math.max(0, count - HISTORY); i < count; i++) {
+			ThreadRecord record = history.get((int) (i % HISTORY));
+			if (record != null) {
+				report.append(String.format("INFO: TYPE[%s], NAME[%s], ID [%d], HASHCODE [%s], "
+						+ "PRIORITY [%d], TASK [%s]\n", type, record.name, record.id,
+						Integer.toHexString(record.hash), record.priority, record.task));
+			}
+		}
+		return report.toString();
+	}
+
+	private static void record(LongAdder total, AtomicLong max, long nanos) {
+		total.add(nanos);
+		max.accumulateAndGet(nanos, Math::max);
+	}
+
+	private static long millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
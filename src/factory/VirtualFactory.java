@@ -0,0 +1,16 @@
+package factory;
+
+public class VirtualFactory extends InstrumentedFactory {
+
+	//Constructors
+	public VirtualFactory(String FactoryName) {
+		super(FactoryName);
+	}
+
+	//Methods
+	@Override
+	protected Thread createThread(Runnable r, String name) {
+		return Thread.ofVirtual().name(name).unstarted(r);
+	}
+
+}
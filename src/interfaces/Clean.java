@@ -3,6 +3,11 @@ package interfaces;
 import java.io.File;
 import java.util.*;
 
+/**
+ * Edits and describes the files of a search. The static {@code Print} methods are
+ * deprecated because they only print to standard output; {@link tasks.FileSearch#stream()}
+ * hands out the files to be handled directly.
+ */
 public interface Clean {
 	
 	//Default Methods
@@ -15,6 +20,8 @@ public interface Clean {
 	}
 	
 	//Static Methods
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	static void Print(Collection<File> array) {
 		if(array.size() != 0) {
 			for(File i : array) {
@@ -25,6 +32,8 @@ public interface Clean {
 		}
 	}
 	
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	static void Print(File[] array) {
 		if(array.length != 0) {
 			for(File i : array) {
@@ -0,0 +1,15 @@
+package interfaces;
+
+import tasks.ScanProgress;
+
+@FunctionalInterface
+public interface ScanListener {
+
+	//Abstract Methods
+	public void onProgress(ScanProgress progress);
+
+	//Default Methods
+	default void onFinished(ScanProgress progress) {
+		onProgress(progress);
+	}
+}
@@ -3,6 +3,11 @@ package interfaces;
 import java.io.File;
 import java.util.*;
 
+/**
+ * Counts and lists search results. The default methods that print results to standard
+ * output or copy them into another list are deprecated: {@link tasks.FileSearch#stream()}
+ * hands out the files as they are found, to be printed or collected as needed.
+ */
 public interface Search {
 	
 	//Enumeration
@@ -14,6 +19,8 @@ public interface Search {
 	}
 	
 	//Default Methods
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default void printFoundFiles(List<File> list) {
 		for(File i : list) {
 			if(i.isFile()) {
@@ -22,6 +29,8 @@ public interface Search {
 		}
 	}
 	
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default void printFoundDirectories(List<File> list) {
 		for(File i : list) {
 			if(i.isDirectory()) {
@@ -30,18 +39,24 @@ public interface Search {
 		}
 	}
 	
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default void Print(List<File> array) {
 		for(File i : array) {
 			System.out.println(i.getName());
 		}
 	}
 	
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default void Print(File[] array) {
 		for(File i : array) {
 			System.out.println(i.getName());
 		}
 	}
 	
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default void printFoundFiles(File[] array) {
 		for(File i : array) {
 			if(i.isFile()) {
@@ -49,6 +64,8 @@ public interface Search {
 			}
 		}
 	}
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default void printDirectories(List<File> array) {
 		for(File i : array) {
 			if(i.isDirectory()) {
@@ -56,6 +73,8 @@ public interface Search {
 			}
 		}
 	}
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default void printDirectories(File[] array) {
 		for(File i : array) {
 			if(i.isDirectory()) {
@@ -64,6 +83,8 @@ public interface Search {
 		}
 	}
 	
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default List<File> toList(List<File> list, ListType typeList){
 		List<File> newList = null;
 		switch(typeList) {
@@ -89,6 +110,8 @@ public interface Search {
 		}
 	}
 	
+	/** @deprecated Use {@link tasks.FileSearch#stream()}. */
+	@Deprecated
 	default List<File> toList(Collection<? extends File> array, ListType typeList){
 		List<File> newList = null;
 		switch(typeList) {
@@ -8,4 +8,9 @@ public interface WorkingThreadFactory extends ThreadFactory {
 	public void getInfo();
 	public String Info();
 	
+	//Default Methods
+	default Runnable instrument(Runnable task) {
+		return task;
+	}
+	
 }
@@ -0,0 +1,246 @@
+package main;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.*;
+
+import factory.DaemonFactory;
+
+/**
+ * A {@link Handler} that takes logging off the calling threads. Records are placed in
+ * a bounded lock-free ring buffer and a single daemon thread drains them in batches
+ * into a target handler, flushing once per batch instead of once per record.
+ *
+ * When the ring is full the {@link OverflowPolicy} decides whether callers wait or the
+ * record is dropped; waiting callers spin briefly and then park for increasing intervals,
+ * and dropped records are counted and reported. Records are filtered by the level of
+ * the target handler as well as this handler's own. Bursts of routine
+ * messages are collapsed: once a logger has published {@code rateLimit} records below
+ * {@link Level#WARNING} within one second, further ones in that second are only counted
+ * and replaced by a single summary record.
+ */
+public final class AsyncLogHandler extends Handler {
+
+	/**
+	 * What a caller does when the ring buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/** Wait until the writer thread frees a slot. */
+		BLOCK,
+		/** Drop the new record. */
+		DROP,
+		/** Drop records below {@link Level#WARNING}, wait for the others. */
+		DROP_BELOW_WARNING,
+	}
+
+	private static final DaemonFactory FACTORY = new DaemonFactory("Log Writer");
+	private static final int BATCH_SIZE = 256;
+	private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(5);
+	private static final int SPINS = 64;
+	private static final long MAX_BACKOFF = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+	private final Handler target;
+	private final OverflowPolicy policy;
+	private final int rateLimit;
+
+	private final AtomicReferenceArray<LogRecord> ring;
+	private final int capacity;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head;
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final Map<String, Integer> windowCounts = new ConcurrentHashMap<>();
+	private volatile long windowStart = System.nanoTime();
+
+	private final Thread writer;
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a handler writing to {@code target}.
+	 *
+	 * @param target    The handler records are written to; owned and closed by this handler.
+	 * @param capacity  Size of the ring buffer.
+	 * @param policy    Behaviour when the ring is full.
+	 * @param rateLimit Records per logger and second before messages are collapsed; 0 disables.
+	 */
+	public AsyncLogHandler(Handler target, int capacity, OverflowPolicy policy, int rateLimit) {
+		this.target = target;
+		this.capacity = capacity;
+		this.policy = policy;
+		this.rateLimit = rateLimit;
+		this.ring = new AtomicReferenceArray<>(capacity);
+		writer = FACTORY.newThread(this::drain);
+		writer.start();
+	}
+
+	/**
+	 * Queues a record; returns without doing any I/O.
+	 */
+	@Override
+	public void publish(LogRecord record) {
+		if (closed || record == null || !isLoggable(record)
+				|| record.getLevel().intValue() < target.getLevel().intValue()) {
+			return;
+		}
+		if (rateLimit > 0 && record.getLevel().intValue() < Level.WARNING.intValue()) {
+			String key = String.valueOf(record.getLoggerName());
+			if (windowCounts.merge(key, 1, Integer::sum) > rateLimit) {
+				return;
+			}
+		}
+		offer(record);
+	}
+
+	/**
+	 * Waits until every queued record has been written, then flushes the target.
+	 */
+	@Override
+	public void flush() {
+		long published = tail.get();
+		for (int attempt = 0; head < published && writer.isAlive(); attempt++) {
+			LockSupport.unpark(writer);
+			backOff(attempt);
+		}
+		target.flush();
+	}
+
+	/**
+	 * Drains the remaining records, stops the writer thread and closes the target.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		flush();
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		target.close();
+	}
+
+	/**
+	 * @return Records dropped because the ring was full.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return The handler records are written to.
+	 */
+	public Handler getTarget() {
+		return target;
+	}
+
+	private void offer(LogRecord record) {
+		boolean mayDrop = policy == OverflowPolicy.DROP
+				|| (policy == OverflowPolicy.DROP_BELOW_WARNING && record.getLevel().intValue() < Level.WARNING.intValue());
+		int attempt = 0;
+		while (true) {
+			long slot = tail.get();
+			if (slot - head >= capacity) {
+				if (mayDrop) {
+					dropped.incrementAndGet();
+					return;
+				}
+				LockSupport.unpark(writer);
+				backOff(attempt++);
+				continue;
+			}
+			if (tail.compareAndSet(slot, slot + 1)) {
+				ring.set((int) (slot % capacity), record);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writer loop: moves up to {@link #BATCH_SIZE} records at a time to the target and
+	 * emits the collapsed-message and dropped-record summaries once per second.
+	 */
+	private void drain() {
+		long reportedDrops = 0;
+		while (!closed || head < tail.get()) {
+			int written = 0;
+			int attempt = 0;
+			while (written < BATCH_SIZE && head < tail.get()) {
+				int index = (int) (head % capacity);
+				LogRecord record = ring.get(index);
+				if (record == null) {
+					// The slot was claimed but its record is not visible yet.
+					backOff(attempt++);
+					continue;
+				}
+				attempt = 0;
+				ring.set(index, null);
+				head = head + 1;
+				target.publish(record);
+				written++;
+			}
+
+			if (System.nanoTime() - windowStart >= WINDOW) {
+				reportedDrops = summarize(reportedDrops);
+			}
+			if (written > 0) {
+				target.flush();
+			} else {
+				LockSupport.parkNanos(this, IDLE_PARK);
+			}
+		}
+		summarize(reportedDrops);
+		target.flush();
+	}
+
+	/**
+	 * Writes one summary per logger that exceeded the rate limit in the last window,
+	 * plus the number of records dropped since the last summary, and starts a new window.
+	 *
+	 * @return The drop count reported so far.
+	 */
+	private long summarize(long reportedDrops) {
+		long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - windowStart));
+		windowStart = System.nanoTime();
+		for (String logger : windowCounts.keySet()) {
+			// Removed atomically, so a record counted after this starts the next window.
+			Integer removed = windowCounts.remove(logger);
+			int total = removed == null ? 0 : removed;
+			if (total > rateLimit) {
+				LogRecord summary = new LogRecord(Level.INFO, String.format(
+						"%,d messages in %d s (%,d/s); %,d not written individually.", total, seconds,
+						total / seconds, total - rateLimit));
+				summary.setLoggerName(logger);
+				target.publish(summary);
+			}
+		}
+
+		long drops = dropped.get();
+		if (drops > reportedDrops) {
+			LogRecord summary = new LogRecord(Level.WARNING,
+					String.format("Log buffer full; %,d records dropped.", drops - reportedDrops));
+			summary.setLoggerName(AsyncLogHandler.class.getName());
+			target.publish(summary);
+		}
+		return drops;
+	}
+
+	/**
+	 * Waits before retry {@code attempt}: spins for the first few, then parks for an
+	 * interval that doubles up to {@link #MAX_BACKOFF}.
+	 */
+	private static void backOff(int attempt) {
+		if (attempt < SPINS) {
+			Thread.onSpinWait();
+		} else {
+			LockSupport.parkNanos(Math.min(MAX_BACKOFF, 1000L << Math.min(attempt - SPINS, 20)));
+		}
+	}
+}
@@ -0,0 +1,617 @@
+package main;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import tasks.*;
+
+/**
+ * The headless front end, used when {@link Main} is started with arguments. It runs
+ * the same {@link FileEditor} and {@link Deleter} engine as the GUI and never touches
+ * AWT or Swing.
+ *
+ * Matches are written to standard output as they are found, either as one JSON object
+ * per line ({@code --format ndjson}, the default), as NUL-terminated paths for
+ * {@code xargs -0} ({@code --format null} or {@code -0}), or as plain lines. Nothing is
+ * collected, so memory use does not grow with the number of matches. Output is
+ * buffered and flushed with every progress report, i.e. at least every 100 ms while
+ * scanning.
+ *
+ * With {@code --content} the files passing the name and attribute filters are searched
+ * by a {@link ContentSearcher} instead, and every matching line is written with its
+ * line number and byte offset.
+ *
+ * With {@code --duplicates} the files passing the filters are grouped by content with a
+ * {@link DuplicateFinder}; combined with {@code --delete} the redundant copies of each
+ * group are removed and the oldest copy is kept.
+ *
+ * With {@code --top} only the first n matches by size, age or depth are printed, in
+ * that order; a {@link TopFiles} search keeps no more than that many at a time.
+ *
+ * {@code --exclude}, {@code --skip-hidden}, {@code --max-depth}, {@code --max-files} and
+ * {@code --one-file-system} build {@link PruneRules}; pruned subtrees are never listed,
+ * and what was skipped is logged with the scan statistics.
+ *
+ * Directories that cannot be read do not stop a search: each one is reported on
+ * standard error and the search goes on.
+ *
+ * The exit status is 0 if anything matched, 1 if nothing did and 2 on a usage error.
+ */
+public final class CommandLine {
+
+	private static final Logger LOGGER = Logger.getLogger(CommandLine.class.getName());
+
+	private static final String USAGE = String.join("\n",
+			"Usage: FileSearcher [options] <pattern>...",
+			"",
+			"Prints files whose name contains any <pattern> (case-insensitive).",
+			"With --content or --duplicates, no pattern is needed and every file name matches.",
+			"",
+			"  --root <dir>        Directory to search; repeatable, nested or repeated roots are read once.",
+			"                      Default: the user's home.",
+			"  --glob              Treat patterns as globs matching the whole name.",
+			"  --regex             Treat patterns as regular expressions.",
+			"  --min-size <n>      Only files of at least n bytes; accepts k, m and g suffixes.",
+			"  --max-size <n>      Only files of at most n bytes.",
+			"  --newer <time>      Only files modified after an ISO date/instant or a duration ago (30m, 12h, 7d).",
+			"  --older <time>      Only files modified before that time.",
+			"  --format <f>        ndjson (default), null or plain.",
+			"  -0                  Same as --format null.",
+			"  --content <text>    Print the lines of the matching files that contain <text>.",
+			"  --content-regex <r> Print the lines of the matching files that match the regular expression <r>.",
+			"  --match-case        Make --content and --content-regex case-sensitive.",
+			"  --duplicates        Print groups of files with identical content; with --delete, remove all but the oldest.",
+			"  --top <n>           Print only the first n matches in --by order.",
+			"  --by <order>        largest (default), newest, oldest or deepest.",
+			"  --index             Answer from the filename index (plain keyword, no filters).",
+			"  --exclude <glob>    Skip files and directories matching a gitignore-style glob; repeatable.",
+			"                      A trailing / only matches directories, a leading ! re-includes.",
+			"  --exclude-from <f>  Read further --exclude globs from a gitignore file.",
+			"  --skip-hidden       Do not descend into directories whose name starts with a dot.",
+			"  --max-depth <n>     Descend at most n levels; 1 only searches the roots' own files.",
+			"  --max-files <n>     Read at most n entries from any single directory.",
+			"  --one-file-system   Do not descend into directories on other file systems than the root.",
+			"  --follow-links      Descend into symbolic links to directories; links back to an ancestor are skipped.",
+			"  --delete            Delete the matching files (or redundant duplicates) instead of printing them.",
+			"  --dry-run           With --delete, only report what would be deleted.",
+			"  --dirs              With --delete, also remove matching directories with their contents.",
+			"  --help              Show this text.");
+
+	/** How matches are written. */
+	private enum Format {
+		NDJSON, NULL, PLAIN
+	}
+
+	private final List<Path> roots = new ArrayList<>();
+	private final List<String> patterns = new ArrayList<>();
+	private String syntax = "substring";
+	private long minSize = Long.MIN_VALUE;
+	private long maxSize = Long.MAX_VALUE;
+	private long newer = Long.MIN_VALUE;
+	private long older = Long.MAX_VALUE;
+	private Format format = Format.NDJSON;
+	private boolean indexed;
+	private boolean delete;
+	private boolean dryRun;
+	private boolean directories;
+	private String content;
+	private boolean contentRegex;
+	private boolean matchCase;
+	private boolean duplicates;
+	private int top;
+	private TopFiles.Order order = TopFiles.Order.LARGEST;
+	private final List<String> excludes = new ArrayList<>();
+	private boolean skipHidden;
+	private int maxDepth = Integer.MAX_VALUE;
+	private int maxFiles = Integer.MAX_VALUE;
+	private boolean oneFileSystem;
+	private boolean followLinks;
+	private PruneRules rules = PruneRules.NONE;
+
+	private Writer out;
+	private long matches;
+
+	private CommandLine() {
+	}
+
+	/**
+	 * Parses {@code args}, runs the search or deletion and returns the exit status.
+	 *
+	 * @param args The command-line arguments.
+	 * @return 0 if anything matched, 1 if nothing did, 2 on a usage error.
+	 */
+	public static int run(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		CommandLine command = new CommandLine();
+		try {
+			if (!command.parse(args)) {
+				System.out.println(USAGE);
+				return 0;
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("FileSearcher: " + e.getMessage());
+			System.err.println(USAGE);
+			return 2;
+		}
+		try {
+			List<Path> distinct = TreeWalker.distinctRoots(command.roots, command.rules);
+			command.roots.clear();
+			command.roots.addAll(distinct);
+		} catch (IOException e) {
+			System.err.println("FileSearcher: cannot read " + e.getMessage());
+			return 2;
+		}
+		if (command.duplicates) {
+			return command.duplicates();
+		}
+		if (command.top > 0) {
+			return command.top();
+		}
+		return command.delete ? command.delete() : command.search();
+	}
+
+	/**
+	 * Reads the options into this instance.
+	 *
+	 * @return {@code false} if only the usage text was requested.
+	 * @throws IllegalArgumentException On an unknown option, a missing or malformed value,
+	 *                                  or a combination that is not supported.
+	 */
+	private boolean parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			switch (arg) {
+			case "--help", "-h" -> {
+				return false;
+			}
+			case "--root" -> roots.add(Paths.get(value(args, ++i, arg)));
+			case "--glob" -> syntax = "glob";
+			case "--regex" -> syntax = "regex";
+			case "--min-size" -> minSize = parseSize(value(args, ++i, arg));
+			case "--max-size" -> maxSize = parseSize(value(args, ++i, arg));
+			case "--newer" -> newer = parseTime(value(args, ++i, arg));
+			case "--older" -> older = parseTime(value(args, ++i, arg));
+			case "--format" -> format = parseFormat(value(args, ++i, arg));
+			case "-0" -> format = Format.NULL;
+			case "--content" -> {
+				content = value(args, ++i, arg);
+				contentRegex = false;
+			}
+			case "--content-regex" -> {
+				content = value(args, ++i, arg);
+				contentRegex = true;
+			}
+			case "--match-case" -> matchCase = true;
+			case "--duplicates" -> duplicates = true;
+			case "--top" -> top = parseCount(value(args, ++i, arg));
+			case "--by" -> order = parseOrder(value(args, ++i, arg));
+			case "--index" -> indexed = true;
+			case "--delete" -> delete = true;
+			case "--dry-run" -> dryRun = true;
+			case "--dirs" -> directories = true;
+			case "--exclude" -> excludes.add(value(args, ++i, arg));
+			case "--exclude-from" -> excludes.addAll(readIgnoreFile(value(args, ++i, arg)));
+			case "--skip-hidden" -> skipHidden = true;
+			case "--max-depth" -> maxDepth = parseCount(value(args, ++i, arg));
+			case "--max-files" -> maxFiles = parseCount(value(args, ++i, arg));
+			case "--one-file-system" -> oneFileSystem = true;
+			case "--follow-links" -> followLinks = true;
+			case "--" -> {
+				patterns.addAll(Arrays.asList(args).subList(i + 1, args.length));
+				i = args.length;
+			}
+			default -> {
+				if (arg.startsWith("-")) {
+					throw new IllegalArgumentException("unknown option " + arg);
+				}
+				patterns.add(arg);
+			}
+			}
+		}
+
+		if (patterns.isEmpty() && (content != null || duplicates)) {
+			patterns.add("");
+		}
+		if (patterns.isEmpty()) {
+			throw new IllegalArgumentException("no pattern given");
+		}
+		if (roots.isEmpty()) {
+			roots.add(Paths.get(System.getProperty("user.home")));
+		}
+		boolean filtered = minSize != Long.MIN_VALUE || maxSize != Long.MAX_VALUE || newer != Long.MIN_VALUE
+				|| older != Long.MAX_VALUE;
+		if (indexed && (filtered || patterns.size() > 1 || !syntax.equals("substring"))) {
+			throw new IllegalArgumentException("--index takes a single plain keyword and no attribute filters");
+		}
+		if (duplicates && (content != null || indexed)) {
+			throw new IllegalArgumentException("--duplicates cannot be combined with --content or --index");
+		}
+		if (delete && !duplicates && (filtered || syntax.equals("glob"))) {
+			throw new IllegalArgumentException("--delete does not support --glob or attribute filters");
+		}
+		if (content != null && (indexed || delete)) {
+			throw new IllegalArgumentException("--content cannot be combined with --index or --delete");
+		}
+		if (top > 0 && (content != null || duplicates || indexed || delete)) {
+			throw new IllegalArgumentException("--top cannot be combined with --content, --duplicates, --index or --delete");
+		}
+		if (content != null && content.isEmpty()) {
+			throw new IllegalArgumentException("empty --content query");
+		}
+		if ((dryRun || directories) && !delete) {
+			throw new IllegalArgumentException("--dry-run and --dirs require --delete");
+		}
+		if (!excludes.isEmpty() || skipHidden || maxDepth != Integer.MAX_VALUE || maxFiles != Integer.MAX_VALUE
+				|| oneFileSystem || followLinks) {
+			rules = new PruneRules(excludes, skipHidden, maxDepth, maxFiles, oneFileSystem, followLinks);
+		}
+		return true;
+	}
+
+	/**
+	 * Streams matches from all roots, walked together, to standard output.
+	 */
+	private int search() {
+		openOutput();
+		NameMatcher matcher = nameMatcher();
+		Predicate<FileRecord> filter = attributeFilter();
+
+		try {
+			if (content != null) {
+				ContentSearcher searcher = new ContentSearcher(roots,
+						record -> matcher.matches(record.getName()) && filter.test(record), content, contentRegex,
+						!matchCase, this::write);
+				searcher.setPruneRules(rules);
+				searcher.addListener(progress -> flush());
+				searcher.call();
+				logScan(searcher.getProgress());
+			} else if (indexed) {
+				// Indexes are kept per root.
+				for (Path root : roots) {
+					FileEditor editor = new FileEditor(patterns.get(0), root, this::write, true);
+					editor.setPruneRules(rules);
+					editor.addListener(progress -> flush());
+					editor.call();
+					logScan(editor.getProgress());
+				}
+			} else {
+				FileEditor editor = new FileEditor(roots, matcher, record -> {
+					if (filter.test(record)) {
+						write(record);
+					}
+				});
+				editor.setPruneRules(rules);
+				editor.addListener(progress -> flush());
+				editor.call();
+				logScan(editor.getProgress());
+			}
+		} finally {
+			flush();
+		}
+		return matches > 0 ? 0 : 1;
+	}
+
+	/**
+	 * Finds duplicates across all roots and prints the groups, or deletes the redundant copies.
+	 */
+	private int duplicates() {
+		NameMatcher matcher = nameMatcher();
+		Predicate<FileRecord> filter = attributeFilter();
+		DuplicateFinder finder = new DuplicateFinder(roots,
+				record -> matcher.matches(record.getName()) && filter.test(record), minSize, HashCache.shared());
+		finder.setPruneRules(rules);
+		List<DuplicateGroup> groups = finder.call();
+		logScan(finder.getProgress());
+
+		if (delete) {
+			Deleter deleter = new Deleter(groups, null, dryRun);
+			deleter.run();
+			printSummary("duplicates", deleter.getSummary());
+			return deleter.getSummary().getDeleted() > 0 ? 0 : 1;
+		}
+
+		openOutput();
+		try {
+			for (DuplicateGroup group : groups) {
+				StringBuilder text = new StringBuilder();
+				switch (format) {
+				case NDJSON -> {
+					text.append("{\"size\":").append(group.getSize()).append(",\"hash\":\"").append(group.getHash())
+							.append("\",\"files\":[");
+					for (FileRecord record : group.getFiles()) {
+						text.append(record == group.getKept() ? "" : ",")
+								.append(quote(record.getPath().toAbsolutePath().toString()));
+					}
+					text.append("]}\n");
+				}
+				case NULL -> group.getRedundant()
+						.forEach(record -> text.append(record.getPath().toAbsolutePath()).append('\0'));
+				case PLAIN -> {
+					text.append(group).append('\n');
+					group.getFiles().forEach(record -> text.append("  ").append(record.getPath().toAbsolutePath())
+							.append('\n'));
+				}
+				}
+				writeLine(text.toString());
+			}
+		} finally {
+			flush();
+		}
+		return groups.isEmpty() ? 1 : 0;
+	}
+
+	/**
+	 * Ranks the matches of all roots and prints the first {@link #top} of them, best first.
+	 */
+	private int top() {
+		NameMatcher matcher = nameMatcher();
+		Predicate<FileRecord> filter = attributeFilter();
+		TopFiles search = new TopFiles(roots, record -> matcher.matches(record.getName()) && filter.test(record),
+				order, top);
+		search.setPruneRules(rules);
+		List<FileRecord> ranked = search.call();
+		logScan(search.getProgress());
+
+		openOutput();
+		try {
+			ranked.forEach(this::write);
+		} finally {
+			flush();
+		}
+		return ranked.isEmpty() ? 1 : 0;
+	}
+
+	/**
+	 * Runs a {@link Deleter} per root and prints its summary.
+	 */
+	private int delete() {
+		List<String> alternatives = new ArrayList<>();
+		for (String pattern : patterns) {
+			alternatives.add(syntax.equals("regex") ? pattern : Pattern.quote(pattern));
+		}
+		String pattern = String.join("|", alternatives);
+
+		long total = 0;
+		for (Path root : roots) {
+			Deleter deleter = new Deleter(pattern, root, null, directories, dryRun);
+			deleter.setPruneRules(rules);
+			deleter.run();
+			logScan(deleter.getProgress());
+			DeleteSummary summary = deleter.getSummary();
+			total += summary.getDeleted() + summary.getDirectories();
+			printSummary(root.toAbsolutePath().toString(), summary);
+		}
+		return total > 0 ? 0 : 1;
+	}
+
+	private void printSummary(String root, DeleteSummary summary) {
+		if (format == Format.NDJSON) {
+			System.out.printf("{\"root\":%s,\"dryRun\":%b,\"files\":%d,\"bytes\":%d,\"directories\":%d,\"failed\":%d}%n",
+					quote(root), dryRun, summary.getDeleted(), summary.getBytesFreed(), summary.getDirectories(),
+					summary.getFailed());
+		} else {
+			System.out.println(root + ": " + summary);
+		}
+	}
+
+	/**
+	 * Logs what the prune rules skipped during a scan, if anything, and what could not be read.
+	 */
+	private void logScan(ScanProgress progress) {
+		for (ScanError error : progress.getErrors()) {
+			System.err.println(error.getKind() == ScanError.Kind.LOOP
+					? "FileSearcher: not following loop at " + error.getPath()
+					: "FileSearcher: cannot read " + error.getPath() + ": " + error.getMessage());
+		}
+		long unlisted = progress.getErrorCount() - progress.getErrors().size();
+		if (unlisted > 0) {
+			System.err.println("FileSearcher: " + unlisted + " more unreadable entries");
+		}
+		if (progress.getPrunedDirectories() + progress.getExcludedFiles() + progress.getTruncatedDirectories() > 0) {
+			LOGGER.info(() -> String.format("Skipped %,d directories and %,d files, truncated %,d listings (%s).",
+					progress.getPrunedDirectories(), progress.getExcludedFiles(), progress.getTruncatedDirectories(),
+					rules));
+		}
+	}
+
+	private void openOutput() {
+		Charset charset = format == Format.NDJSON ? StandardCharsets.UTF_8 : nativeCharset();
+		out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), charset), 1 << 16);
+	}
+
+	/**
+	 * Compiles the name patterns in the selected syntax into one matcher.
+	 */
+	private NameMatcher nameMatcher() {
+		List<NameMatcher> matchers = new ArrayList<>();
+		for (String pattern : patterns) {
+			matchers.add(switch (syntax) {
+			case "glob" -> NameMatcher.glob(pattern);
+			case "regex" -> NameMatcher.regex(pattern);
+			default -> NameMatcher.substring(pattern);
+			});
+		}
+		return NameMatcher.anyOf(matchers);
+	}
+
+	private Predicate<FileRecord> attributeFilter() {
+		return record -> record.getSize() >= minSize && record.getSize() <= maxSize
+				&& record.getLastModified() > newer && record.getLastModified() < older;
+	}
+
+	/**
+	 * Writes one match. Called concurrently by the scan threads.
+	 */
+	private void write(FileRecord record) {
+		String path = record.getPath().toAbsolutePath().toString();
+		String line = switch (format) {
+		case NDJSON -> "{\"path\":" + quote(path) + ",\"name\":" + quote(record.getName()) + ",\"size\":"
+				+ record.getSize() + ",\"modified\":\"" + Instant.ofEpochMilli(record.getLastModified()) + "\"}\n";
+		case NULL -> path + '\0';
+		case PLAIN -> path + '\n';
+		};
+		writeLine(line);
+	}
+
+	/**
+	 * Writes one matching line of a content search. Called concurrently by the scan threads.
+	 */
+	private void write(ContentMatch match) {
+		String path = match.getPath().toAbsolutePath().toString();
+		String line = switch (format) {
+		case NDJSON -> "{\"path\":" + quote(path) + ",\"line\":" + match.getLine() + ",\"offset\":"
+				+ match.getOffset() + ",\"text\":" + quote(match.getText()) + "}\n";
+		case NULL -> match.isFirstInFile() ? path + '\0' : "";
+		case PLAIN -> path + ':' + match.getLine() + ':' + match.getText() + '\n';
+		};
+		writeLine(line);
+	}
+
+	private synchronized void writeLine(String line) {
+		try {
+			out.write(line);
+			matches++;
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Failed to write result", e);
+		}
+	}
+
+	private synchronized void flush() {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Failed to flush results", e);
+		}
+	}
+
+	/**
+	 * Returns {@code text} as a JSON string literal.
+	 */
+	static String quote(String text) {
+		StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '"' -> json.append("\\\"");
+			case '\\' -> json.append("\\\\");
+			case '\n' -> json.append("\\n");
+			case '\r' -> json.append("\\r");
+			case '\t' -> json.append("\\t");
+			default -> {
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	private static String value(String[] args, int index, String option) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException(option + " needs a value");
+		}
+		return args[index];
+	}
+
+	/**
+	 * Parses a byte count with an optional k, m or g suffix (powers of 1024).
+	 */
+	static long parseSize(String text) {
+		String lower = text.trim().toLowerCase(Locale.ROOT);
+		int shift = switch (lower.isEmpty() ? ' ' : lower.charAt(lower.length() - 1)) {
+		case 'k' -> 10;
+		case 'm' -> 20;
+		case 'g' -> 30;
+		default -> 0;
+		};
+		try {
+			return Long.parseLong(shift == 0 ? lower : lower.substring(0, lower.length() - 1)) << shift;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid size " + text);
+		}
+	}
+
+	/**
+	 * Parses an ISO date, an ISO instant or a duration ago such as {@code 30m}, {@code 12h}
+	 * or {@code 7d}, into milliseconds since the epoch.
+	 */
+	static long parseTime(String text) {
+		try {
+			if (text.matches("\\d+[smhd]")) {
+				long amount = Long.parseLong(text.substring(0, text.length() - 1));
+				Duration ago = switch (text.charAt(text.length() - 1)) {
+				case 's' -> Duration.ofSeconds(amount);
+				case 'm' -> Duration.ofMinutes(amount);
+				case 'h' -> Duration.ofHours(amount);
+				default -> Duration.ofDays(amount);
+				};
+				return System.currentTimeMillis() - ago.toMillis();
+			}
+			if (text.length() == 10) {
+				return LocalDate.parse(text).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+			}
+			return Instant.parse(text).toEpochMilli();
+		} catch (DateTimeException | ArithmeticException e) {
+			throw new IllegalArgumentException("invalid time " + text);
+		}
+	}
+
+	private static int parseCount(String text) {
+		try {
+			int count = Integer.parseInt(text.trim());
+			if (count > 0) {
+				return count;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below.
+		}
+		throw new IllegalArgumentException("invalid count " + text);
+	}
+
+	private static List<String> readIgnoreFile(String file) {
+		try {
+			return PruneRules.readIgnoreFile(Paths.get(file));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("cannot read " + file);
+		}
+	}
+
+	private static TopFiles.Order parseOrder(String text) {
+		try {
+			return TopFiles.Order.valueOf(text.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("invalid order " + text);
+		}
+	}
+
+	private static Format parseFormat(String text) {
+		try {
+			return Format.valueOf(text.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("invalid format " + text);
+		}
+	}
+
+	/**
+	 * Returns the charset file names are decoded with, so NUL and plain output reproduce them.
+	 */
+	private static Charset nativeCharset() {
+		String name = System.getProperty("sun.jnu.encoding", System.getProperty("native.encoding"));
+		try {
+			return name == null ? Charset.defaultCharset() : Charset.forName(name);
+		} catch (IllegalArgumentException e) {
+			return Charset.defaultCharset();
+		}
+	}
+}
@@ -1,20 +1,22 @@
 package main;
 
-import java.io.IOException;
+import java.io.*;
 import java.util.logging.*;
 
 import GUIs.*;
 
 /**
  * The entry point for the File Searcher application.
- * Initializes logging and launches the main GUI.
+ * Initializes logging and launches the main GUI, or runs the headless
+ * {@link CommandLine} when arguments are given.
  */
 public class Main {
 
 	// Logger Variables
 	private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
-	private static FileHandler logFileHandler;
+	private static AsyncLogHandler logFileHandler;
 	private static final SimpleFormatter FORMATTER = new SimpleFormatter();
+	private static final String LOG_FILE = "FileSearcher.log";
 
 	// Logger Initialization
 	static {
@@ -28,37 +30,68 @@ public class Main {
 	/**
 	 * The main driver method to launch the application.
 	 *
-	 * @param args Command-line arguments (not used).
+	 * @param args Command-line arguments; when present the search runs headless.
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0) {
+			// The shutdown hook drains the log before the JVM exits.
+			System.exit(CommandLine.run(args));
+		}
 		new MainGUI();
 		LOGGER.info("Application launched successfully.");
 	}
 
 	/**
-	 * Initializes the logger by setting up a {@link FileHandler}.
+	 * Initializes logging by attaching an {@link AsyncLogHandler} to the root logger, so
+	 * every class logs to {@value #LOG_FILE} without blocking on file I/O. The handlers
+	 * already on the root logger, such as the JDK's console handler, are wrapped in their
+	 * own {@link AsyncLogHandler}, so no record is formatted or written on the logging
+	 * thread. The ring size, overflow policy and per-logger rate limit come from the
+	 * {@code filesearcher.log.capacity}, {@code filesearcher.log.overflow} and
+	 * {@code filesearcher.log.rateLimit} system properties.
 	 *
 	 * @throws SecurityException If a security manager denies access to logging.
 	 * @throws IOException        If there is an error creating the log file.
 	 */
 	private static void initializeLogger() throws SecurityException, IOException {
-		if (!isFileHandlerAttached()) {
-			logFileHandler = new FileHandler("FileSearcher.log", true); // Append to existing log file
-			logFileHandler.setFormatter(FORMATTER);
-			LOGGER.addHandler(logFileHandler);
+		Logger root = Logger.getLogger("");
+		if (!isFileHandlerAttached(root)) {
+			for (Handler handler : root.getHandlers()) {
+				root.removeHandler(handler);
+				AsyncLogHandler wrapped = async(handler);
+				root.addHandler(wrapped);
+				Runtime.getRuntime().addShutdownHook(new Thread(wrapped::close, "Log Shutdown"));
+			}
+			// Buffered, so the writer thread's once-per-batch flush is the only write syscall.
+			var file = new StreamHandler(new BufferedOutputStream(new FileOutputStream(LOG_FILE, true), 1 << 16),
+					FORMATTER);
+			logFileHandler = async(file);
+			root.addHandler(logFileHandler);
 			LOGGER.setLevel(Level.INFO); // Set the desired logging level
+			Runtime.getRuntime().addShutdownHook(new Thread(logFileHandler::close, "Log Shutdown"));
 		}
 	}
 
 	/**
-	 * Checks if a {@link FileHandler} is already attached to the logger.
+	 * Wraps {@code handler} in an {@link AsyncLogHandler} configured from the system properties.
+	 */
+	private static AsyncLogHandler async(Handler handler) {
+		return new AsyncLogHandler(handler, Integer.getInteger("filesearcher.log.capacity", 8192),
+				AsyncLogHandler.OverflowPolicy.valueOf(
+						System.getProperty("filesearcher.log.overflow", "DROP_BELOW_WARNING")),
+				Integer.getInteger("filesearcher.log.rateLimit", 100));
+	}
+
+	/**
+	 * Checks if an {@link AsyncLogHandler} is already attached to the logger.
 	 *
-	 * @return {@code true} if a {@link FileHandler} is attached, {@code false} otherwise.
+	 * @param logger The logger to inspect.
+	 * @return {@code true} if an {@link AsyncLogHandler} is attached, {@code false} otherwise.
 	 */
-	private static boolean isFileHandlerAttached() {
-		for (var handler : LOGGER.getHandlers()) {
-			if (handler instanceof FileHandler) {
-				logFileHandler = (FileHandler) handler;
+	private static boolean isFileHandlerAttached(Logger logger) {
+		for (var handler : logger.getHandlers()) {
+			if (handler instanceof AsyncLogHandler) {
+				logFileHandler = (AsyncLogHandler) handler;
 				return true;
 			}
 		}
@@ -0,0 +1,55 @@
+package tasks;
+
+import java.nio.file.Path;
+
+/**
+ * One line of a file that contains the query of a {@link ContentSearcher}.
+ */
+public final class ContentMatch {
+
+	private final Path path;
+	private final long line;
+	private final long offset;
+	private final String text;
+	private final boolean firstInFile;
+
+	/**
+	 * @param path        The file.
+	 * @param line        The 1-based line number.
+	 * @param offset      Byte offset of the match from the start of the file.
+	 * @param text        The matching line, possibly shortened.
+	 * @param firstInFile {@code true} for the first match reported for this file.
+	 */
+	public ContentMatch(Path path, long line, long offset, String text, boolean firstInFile) {
+		this.path = path;
+		this.line = line;
+		this.offset = offset;
+		this.text = text;
+		this.firstInFile = firstInFile;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public long getLine() {
+		return line;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public boolean isFirstInFile() {
+		return firstInFile;
+	}
+
+	@Override
+	public String toString() {
+		return path + ":" + line + ":" + text;
+	}
+}
@@ -0,0 +1,563 @@
+package tasks;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import interfaces.ScanListener;
+
+/**
+ * The {@code ContentSearcher} class searches inside the files that pass a file filter,
+ * reporting every matching line with its line number and byte offset.
+ *
+ * Files are searched by the {@link TreeWalker} workers as they are found, so several
+ * files are read in parallel. Files of at least {@code filesearcher.content.mapThreshold}
+ * bytes (1 MB by default) are memory-mapped in chunks of whole lines; smaller ones are
+ * read into direct buffers taken from a shared pool. A file whose first 8 KB contain a
+ * NUL byte is treated as binary and skipped.
+ *
+ * Literal queries are found on the bytes without decoding. Instead of a Boyer-Moore
+ * style skip loop, which mispredicts on ordinary text, the scan looks for the query's
+ * rarest byte eight bytes at a time (SWAR, one {@code long} per step) and verifies
+ * the whole query only at those candidates, folding ASCII case when searching
+ * case-insensitively. Regular expressions run over a
+ * zero-copy Latin-1 view of the bytes, so match positions are byte offsets. When the
+ * expression requires a literal, that literal is scanned for as above and the
+ * expression only runs on the lines containing it, like grep. Literal queries
+ * are encoded as UTF-8, while regular expressions see one character per byte and so
+ * should stick to ASCII; case folding beyond ASCII is not attempted.
+ */
+public class ContentSearcher implements Callable<Integer> {
+
+	private static final Logger LOGGER = Logger.getLogger(ContentSearcher.class.getName());
+
+	/** Files at least this large are memory-mapped instead of read into a pooled buffer. */
+	private static final int MAP_THRESHOLD = Integer.getInteger("filesearcher.content.mapThreshold", 1 << 20);
+
+	/** Largest region mapped at once. */
+	private static final int MAX_CHUNK = 1 << 30;
+
+	/** Bytes inspected for a NUL byte before a file is searched. */
+	private static final int BINARY_PROBE = 8192;
+
+	/** Scratch array per scan thread; buffers are copied through it in bulk for the hot loops. */
+	private static final ThreadLocal<byte[]> WINDOW = ThreadLocal.withInitial(() -> new byte[1 << 16]);
+
+	/** Reads eight bytes of a window as one little-endian {@code long}. */
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+
+	/** Lowercase letters from most to least frequent in typical text. */
+	private static final String LETTER_FREQUENCY = "etaoinsrhldcumfpgwybvkxjqz";
+
+	/** Longest line text carried in a {@link ContentMatch}. */
+	private static final int MAX_LINE = 256;
+
+	/** Direct read buffers shared by all searches, at most {@link #POOL_SIZE} kept. */
+	private static final Queue<ByteBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+	private static final AtomicInteger POOLED = new AtomicInteger();
+
+	private final List<Path> roots;
+	private final Predicate<FileRecord> files;
+	private final Consumer<ContentMatch> sink;
+	private PruneRules rules = PruneRules.NONE;
+
+	/** Folded UTF-8 bytes of the literal query, or of the regex's required literal. */
+	private final byte[] needle;
+	private final byte[] fold;
+
+	/** Index of the needle byte scanned for, and that byte in both cases, repeated eight times. */
+	private final int rare;
+	private final long rareLower;
+	private final long rareUpper;
+	private final Pattern regex;
+
+	private final ScanProgress progress = new ScanProgress();
+	private final AtomicInteger matchCount = new AtomicInteger();
+	private final LongAdder searchedFiles = new LongAdder();
+	private final LongAdder searchedBytes = new LongAdder();
+	private final LongAdder binaryFiles = new LongAdder();
+
+	/**
+	 * Constructs a content search.
+	 *
+	 * @param root       The directory (or single file) to search.
+	 * @param files      Selects the files whose content is searched, e.g. by name.
+	 * @param query      The text, or regular expression, to find.
+	 * @param isRegex    {@code true} if {@code query} is a regular expression.
+	 * @param ignoreCase {@code true} to ignore ASCII case.
+	 * @param sink       Thread-safe consumer receiving each matching line.
+	 */
+	public ContentSearcher(Path root, Predicate<FileRecord> files, String query, boolean isRegex,
+			boolean ignoreCase, Consumer<ContentMatch> sink) {
+		this(List.of(root), files, query, isRegex, ignoreCase, sink);
+	}
+
+	/**
+	 * Constructs a content search over several roots, walked together as by
+	 * {@link TreeWalker#walkRecords(Collection, Consumer, Consumer, ScanProgress)}, so a
+	 * file reachable from two overlapping roots is searched once.
+	 *
+	 * @param roots      The directories (or single files) to search.
+	 * @param files      Selects the files whose content is searched, e.g. by name.
+	 * @param query      The text, or regular expression, to find.
+	 * @param isRegex    {@code true} if {@code query} is a regular expression.
+	 * @param ignoreCase {@code true} to ignore ASCII case.
+	 * @param sink       Thread-safe consumer receiving each matching line.
+	 */
+	public ContentSearcher(List<Path> roots, Predicate<FileRecord> files, String query, boolean isRegex,
+			boolean ignoreCase, Consumer<ContentMatch> sink) {
+		if (query.isEmpty()) {
+			throw new IllegalArgumentException("Empty content query");
+		}
+		this.roots = List.copyOf(roots);
+		this.files = files;
+		this.sink = sink;
+		this.fold = new byte[256];
+		for (int b = 0; b < 256; b++) {
+			fold[b] = (byte) (ignoreCase && b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+		}
+		this.regex = isRegex
+				? Pattern.compile(query, Pattern.MULTILINE | (ignoreCase ? Pattern.CASE_INSENSITIVE : 0))
+				: null;
+		byte[] literal = (isRegex ? NameMatcher.requiredLiteral(query) : query).getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < literal.length; i++) {
+			literal[i] = fold[literal[i] & 0xFF];
+		}
+		this.needle = literal;
+		int rarest = 0;
+		for (int i = 1; i < literal.length; i++) {
+			if (frequency(literal[i]) < frequency(literal[rarest])) {
+				rarest = i;
+			}
+		}
+		this.rare = rarest;
+		int rareByte = literal.length == 0 ? 0 : literal[rarest] & 0xFF;
+		this.rareLower = ONES * rareByte;
+		this.rareUpper = ONES * (ignoreCase && rareByte >= 'a' && rareByte <= 'z' ? rareByte - ('a' - 'A') : rareByte);
+	}
+
+	/**
+	 * Walks the tree, searches every selected file and returns the number of matching lines.
+	 *
+	 * @return the number of matching lines.
+	 */
+	@Override
+	public Integer call() {
+		progress.start();
+		try {
+			TreeWalker.walkRecords(roots, rules, record -> {
+				if (!progress.isCancelled() && files.test(record)) {
+					searchFile(record);
+				}
+			}, null, progress);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Failed to traverse directories: " + roots, e);
+		} finally {
+			progress.finish();
+			LOGGER.info(() -> String.format("Searched %,d files (%.2f GB, %,d binary skipped) under %s: %,d lines, %.2f GB/s.",
+					getSearchedFiles(), getSearchedBytes() / 1e9, binaryFiles.sum(), roots, matchCount.get(),
+					getGigabytesPerSecond()));
+		}
+		return matchCount.get();
+	}
+
+	/**
+	 * Sets the subtrees and files the walk skips; by default nothing is skipped.
+	 *
+	 * @param rules The rules to apply.
+	 */
+	public void setPruneRules(PruneRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Registers a listener that receives periodic progress reports while the search runs.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public void addListener(ScanListener listener) {
+		progress.addListener(listener);
+	}
+
+	/**
+	 * Asks a running search to stop. Matches already reported stay reported.
+	 */
+	public void cancel() {
+		progress.cancel();
+	}
+
+	/**
+	 * @return The progress of the traversal.
+	 */
+	public ScanProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * @return Files whose content was searched, excluding binary ones.
+	 */
+	public long getSearchedFiles() {
+		return searchedFiles.sum();
+	}
+
+	/**
+	 * @return Bytes of content searched.
+	 */
+	public long getSearchedBytes() {
+		return searchedBytes.sum();
+	}
+
+	/**
+	 * @return Search throughput over the elapsed time, in gigabytes (10^9 bytes) per second.
+	 */
+	public double getGigabytesPerSecond() {
+		long millis = progress.getElapsedMillis();
+		return millis == 0 ? 0 : getSearchedBytes() / 1e6 / millis;
+	}
+
+	/**
+	 * Searches one file, mapping it or reading it into a pooled buffer depending on its size.
+	 */
+	private void searchFile(FileRecord record) {
+		long size = record.getSize();
+		if (size == 0) {
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(record.getPath(), StandardOpenOption.READ)) {
+			FileState state = new FileState(record.getPath());
+			if (size < MAP_THRESHOLD) {
+				ByteBuffer buffer = acquire();
+				try {
+					while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+						// Read until the buffer is full or the file ends.
+					}
+					buffer.flip();
+					if (!isBinary(buffer)) {
+						search(buffer, 0, state, true);
+					}
+				} finally {
+					release(buffer);
+				}
+				return;
+			}
+
+			size = channel.size();
+			long position = 0;
+			while (position < size && !progress.isCancelled()) {
+				ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(MAX_CHUNK, size - position));
+				if (position == 0 && isBinary(chunk)) {
+					return;
+				}
+				if (position + chunk.limit() < size) {
+					// End the chunk after its last newline so no line spans two chunks.
+					int end = chunk.limit() - 1;
+					while (end > 0 && chunk.get(end) != '\n') {
+						end--;
+					}
+					if (end > 0) {
+						chunk.limit(end + 1);
+					}
+				}
+				position += chunk.limit();
+				search(chunk, position - chunk.limit(), state, position >= size);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Failed to search: " + record.getPath(), e);
+		}
+	}
+
+	private boolean isBinary(ByteBuffer buffer) {
+		int probe = Math.min(buffer.limit(), BINARY_PROBE);
+		for (int i = 0; i < probe; i++) {
+			if (buffer.get(i) == 0) {
+				binaryFiles.increment();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Searches {@code buffer[0, limit)}, which starts {@code base} bytes into the file, and
+	 * reports each matching line once. Newlines after the last match are only counted
+	 * when another chunk of the same file follows.
+	 */
+	private void search(ByteBuffer buffer, long base, FileState state, boolean last) {
+		int limit = buffer.limit();
+		searchedBytes.add(limit);
+		if (base == 0) {
+			searchedFiles.increment();
+		}
+		Matcher matcher = regex == null ? null : regex.matcher(new Latin1View(buffer, limit));
+		int from = 0;
+		while (from < limit) {
+			int at;
+			if (matcher == null || needle.length > 0) {
+				at = indexOf(buffer, from, limit, state);
+			} else {
+				at = matcher.find(from) ? matcher.start() : -1;
+			}
+			if (at < 0) {
+				break;
+			}
+			int lineStart = at;
+			while (lineStart > 0 && buffer.get(lineStart - 1) != '\n') {
+				lineStart--;
+			}
+			int lineEnd = at;
+			while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			if (matcher != null && needle.length > 0) {
+				// The required literal only nominates the line; the expression decides.
+				matcher.region(lineStart, lineEnd);
+				if (!matcher.find()) {
+					from = lineEnd + 1;
+					continue;
+				}
+				at = matcher.start();
+			}
+			state.advanceTo(buffer, at);
+			report(state, base + at, text(buffer, lineStart, lineEnd));
+			from = lineEnd + 1;
+		}
+		state.advance(buffer, limit, last);
+	}
+
+	private void report(FileState state, long offset, String text) {
+		matchCount.incrementAndGet();
+		sink.accept(new ContentMatch(state.path, state.line, offset, text, state.reported++ == 0));
+	}
+
+	/**
+	 * Finds {@link #needle} in {@code buffer[from, limit)}. The buffer is copied in bulk
+	 * into the state's window, consecutive windows overlapping by the needle length, so
+	 * the search loop runs over a plain array and a window is reused for every match in it.
+	 *
+	 * @return The offset of the first occurrence, or -1.
+	 */
+	private int indexOf(ByteBuffer buffer, int from, int limit, FileState state) {
+		byte[] window = state.window;
+		while (limit - from >= needle.length) {
+			if (from < state.windowBase || from > state.windowBase + state.windowLength - needle.length) {
+				state.windowBase = from;
+				state.windowLength = Math.min(window.length, limit - from);
+				buffer.get(from, window, 0, state.windowLength);
+			}
+			int at = indexOf(window, from - state.windowBase, state.windowLength);
+			if (at >= 0) {
+				return state.windowBase + at;
+			}
+			if (state.windowBase + state.windowLength >= limit) {
+				break;
+			}
+			from = state.windowBase + state.windowLength - needle.length + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds {@link #needle} in {@code window[offset, length)} by scanning for its rarest byte
+	 * and verifying each candidate. Candidates that would run past the window are left to
+	 * the next, overlapping window.
+	 */
+	private int indexOf(byte[] window, int offset, int length) {
+		int from = offset + rare;
+		while (true) {
+			int hit = findRare(window, from, length);
+			if (hit < 0) {
+				return -1;
+			}
+			int start = hit - rare;
+			if (start + needle.length > length) {
+				return -1;
+			}
+			int j = 0;
+			while (j < needle.length && fold[window[start + j] & 0xFF] == needle[j]) {
+				j++;
+			}
+			if (j == needle.length) {
+				return start;
+			}
+			from = hit + 1;
+		}
+	}
+
+	/**
+	 * Returns the first index at or after {@code from} holding the rare byte in either
+	 * case. Each step tests eight bytes: XOR zeroes the matching bytes, and the classic
+	 * has-zero-byte expression flags them; the lowest flag is always exact.
+	 */
+	private int findRare(byte[] window, int from, int length) {
+		int i = from;
+		for (; i + Long.BYTES <= length; i += Long.BYTES) {
+			long word = (long) LONGS.get(window, i);
+			long lower = word ^ rareLower;
+			long upper = word ^ rareUpper;
+			long found = ((lower - ONES) & ~lower | (upper - ONES) & ~upper) & HIGHS;
+			if (found != 0) {
+				return i + (Long.numberOfTrailingZeros(found) >>> 3);
+			}
+		}
+		for (; i < length; i++) {
+			if (window[i] == (byte) rareLower || window[i] == (byte) rareUpper) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Ranks how common a byte is in typical text; lower means rarer.
+	 */
+	private static int frequency(byte b) {
+		int letter = LETTER_FREQUENCY.indexOf(Character.toLowerCase((char) (b & 0xFF)));
+		if (b == ' ' || b == '\n' || b == '\t') {
+			return 40;
+		}
+		if (letter >= 0 && b >= 'a') {
+			return 30 - letter;
+		}
+		if (letter >= 0) {
+			return 15 - letter / 2;
+		}
+		return (b >= '0' && b <= '9') ? 8 : 4;
+	}
+
+	private static String text(ByteBuffer buffer, int start, int end) {
+		if (end > start && buffer.get(end - 1) == '\r') {
+			end--;
+		}
+		byte[] bytes = new byte[Math.min(end - start, MAX_LINE)];
+		buffer.get(start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static ByteBuffer acquire() {
+		ByteBuffer buffer = BUFFERS.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(MAP_THRESHOLD);
+		}
+		POOLED.decrementAndGet();
+		return buffer.clear();
+	}
+
+	private static void release(ByteBuffer buffer) {
+		if (POOLED.incrementAndGet() <= POOL_SIZE) {
+			BUFFERS.offer(buffer);
+		} else {
+			POOLED.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Line counting state of the file being searched, carried across mapped chunks.
+	 */
+	private static final class FileState {
+
+		private final Path path;
+		private final byte[] window = WINDOW.get();
+		private int windowBase = -1;
+		private int windowLength;
+		private long line = 1;
+		private int counted;
+		private int reported;
+
+		FileState(Path path) {
+			this.path = path;
+		}
+
+		/**
+		 * Counts the newlines before {@code position} in the current chunk, eight bytes
+		 * per step: a byte of {@code x} is zero exactly when the sum below leaves its high bit clear.
+		 */
+		void advanceTo(ByteBuffer buffer, int position) {
+			int i = counted;
+			for (; i + Long.BYTES <= position; i += Long.BYTES) {
+				long x = buffer.getLong(i) ^ (ONES * '\n');
+				line += Long.bitCount(~(((x & ~HIGHS) + ~HIGHS) | x | ~HIGHS));
+			}
+			for (; i < position; i++) {
+				if (buffer.get(i) == '\n') {
+					line++;
+				}
+			}
+			counted = Math.max(counted, position);
+		}
+
+		/** Counts the rest of the chunk, unless it is the last, and prepares for the next one. */
+		void advance(ByteBuffer buffer, int limit, boolean last) {
+			if (!last) {
+				advanceTo(buffer, limit);
+			}
+			counted = 0;
+			windowBase = -1;
+		}
+	}
+
+	/**
+	 * Presents bytes as Latin-1 characters without copying, so regular expressions run
+	 * on the buffer directly and character indexes equal byte offsets.
+	 */
+	private static final class Latin1View implements CharSequence {
+
+		private final ByteBuffer buffer;
+		private final int start;
+		private final int end;
+
+		Latin1View(ByteBuffer buffer, int limit) {
+			this(buffer, 0, limit);
+		}
+
+		private Latin1View(ByteBuffer buffer, int start, int end) {
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (buffer.get(start + index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return new Latin1View(buffer, start + from, start + to);
+		}
+
+		@Override
+		public String toString() {
+			byte[] bytes = new byte[end - start];
+			buffer.get(start, bytes);
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
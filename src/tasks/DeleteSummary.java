@@ -0,0 +1,107 @@
+package tasks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code DeleteSummary} class aggregates the outcome of a bulk deletion in place
+ * of per-file log lines. Counters can be read while the deletion is running, which
+ * is how a dry run streams its planned file count and byte total.
+ */
+public class DeleteSummary {
+
+	private final boolean dryRun;
+	private final LongAdder deleted = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder directories = new LongAdder();
+	private volatile long startTime = System.nanoTime();
+	private volatile long endTime;
+
+	/**
+	 * @param dryRun {@code true} if files are only counted, not deleted.
+	 */
+	public DeleteSummary(boolean dryRun) {
+		this.dryRun = dryRun;
+	}
+
+	void start() {
+		deleted.reset();
+		failed.reset();
+		bytes.reset();
+		directories.reset();
+		endTime = 0;
+		startTime = System.nanoTime();
+	}
+
+	void finish() {
+		endTime = System.nanoTime();
+	}
+
+	void fileDeleted(long size) {
+		deleted.increment();
+		bytes.add(size);
+	}
+
+	void fileFailed() {
+		failed.increment();
+	}
+
+	void directoryDeleted() {
+		directories.increment();
+	}
+
+	void directoryFailed() {
+		failed.increment();
+	}
+
+	/**
+	 * @return {@code true} if nothing was actually deleted.
+	 */
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	/**
+	 * @return Files deleted, or planned for deletion in a dry run.
+	 */
+	public long getDeleted() {
+		return deleted.sum();
+	}
+
+	/**
+	 * @return Files and directories that could not be deleted.
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * @return Bytes freed, or that would be freed in a dry run.
+	 */
+	public long getBytesFreed() {
+		return bytes.sum();
+	}
+
+	/**
+	 * @return Directories removed, counting each one in a matching directory's subtree.
+	 */
+	public long getDirectories() {
+		return directories.sum();
+	}
+
+	/**
+	 * @return Milliseconds since the deletion started, or its total duration once finished.
+	 */
+	public long getElapsedMillis() {
+		long end = endTime == 0 ? System.nanoTime() : endTime;
+		return TimeUnit.NANOSECONDS.toMillis(end - startTime);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %,d files (%.1f MB) and %,d directories, %,d failed, in %d ms",
+				dryRun ? "Would delete" : "Deleted", getDeleted(), getBytesFreed() / 1048576.0, getDirectories(),
+				getFailed(), getElapsedMillis());
+	}
+}
@@ -1,67 +1,446 @@
 package tasks;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.concurrent.ExecutorService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 import enumerations.OSPath;
+import factory.DaemonFactory;
+import interfaces.ScanListener;
 
 /**
  * The {@code Deleter} class is responsible for deleting files from the user's
  * computer that match a specified pattern within a given path.
  * It implements the {@link Runnable} interface to allow execution in a thread.
+ *
+ * Traversal and deletion overlap: the walker hands every match to a pool of delete
+ * threads, with at most {@code filesearcher.delete.inFlight} deletes queued or running
+ * so a fast walk cannot flood memory. Optionally, directories whose own name matches
+ * are removed with their whole subtree: the walk deletes their files like matches, and
+ * once it ends the emptied directories are removed on the same pool, deepest first.
+ * Deleted files are removed from the shared {@link FilenameIndex}es in batches.
+ * In a dry run nothing is deleted and
+ * only the planned count and byte total are accumulated. The outcome is collected in a
+ * {@link DeleteSummary} and logged once instead of once per file.
+ *
+ * A {@code Deleter} can also be given an explicit list of files, or the groups found by
+ * {@link DuplicateFinder}. Each file is only deleted if its size and modification time
+ * still match the record, so a file changed since it was compared is kept and counted
+ * as failed. The redundant copies of a group are only deleted while its kept copy still
+ * exists unchanged and still has the group's hash; otherwise the whole group is skipped.
  */
 public class Deleter implements Runnable {
 
 	private static final Logger LOGGER = Logger.getLogger(Deleter.class.getName());
 
+	/** Maximum deletes queued or running at once. */
+	private static final int MAX_IN_FLIGHT = Integer.getInteger("filesearcher.delete.inFlight", 256);
+
+	/** Threads issuing delete calls. */
+	private static final int DELETE_THREADS = Math.min(MAX_IN_FLIGHT, 16);
+
+	/** Deleted files passed to {@link FilenameIndex#forget(Collection)} at a time. */
+	private static final int FORGET_BATCH = 1024;
+
+	private static final DaemonFactory FACTORY = new DaemonFactory("Delete Factory");
+
 	private final String pattern;
 	private final String pathname;
 	private final ExecutorService executorService;
+	private final ScanProgress progress = new ScanProgress();
+	private final boolean includeDirectories;
+	private final DeleteSummary summary;
+
+	/** Files to delete instead of walking for matches, or {@code null}. */
+	private final Collection<FileRecord> targets;
+
+	/** Duplicate groups whose redundant copies are the targets, or {@code null}. */
+	private final List<DuplicateGroup> groups;
+
+	/** Subtrees and files the walk skips; they are never deleted. */
+	private PruneRules rules = PruneRules.NONE;
+
+	/** Deleted files not yet removed from the filename indexes. */
+	private final Queue<Path> forgotten = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger unforgotten = new AtomicInteger();
 
 	/**
-	 * Constructs a {@code Deleter} instance.
+	 * Constructs a {@code Deleter} instance that deletes matching files.
 	 *
 	 * @param pattern          The pattern used to match file names.
 	 * @param path             The base path where the search will be performed.
 	 * @param executorService  The {@link ExecutorService} for managing thread execution.
 	 */
 	public Deleter(String pattern, OSPath path, ExecutorService executorService) {
+		this(pattern, path, executorService, false, false);
+	}
+
+	/**
+	 * Constructs a {@code Deleter} instance.
+	 *
+	 * @param pattern            The pattern used to match file and directory names.
+	 * @param path               The base path where the search will be performed.
+	 * @param executorService    The {@link ExecutorService} shut down once the deletion ends.
+	 * @param includeDirectories {@code true} to also remove matching directories with their contents.
+	 * @param dryRun             {@code true} to only count what would be deleted.
+	 */
+	public Deleter(String pattern, OSPath path, ExecutorService executorService, boolean includeDirectories,
+			boolean dryRun) {
+		this(pattern, Paths.get(path.toPath()), executorService, includeDirectories, dryRun);
+		this.rules = PruneRules.forPath(path);
+	}
+
+	/**
+	 * Constructs a {@code Deleter} instance for an arbitrary directory.
+	 *
+	 * @param pattern            The pattern used to match file and directory names.
+	 * @param root               The directory where the search will be performed.
+	 * @param executorService    The {@link ExecutorService} shut down once the deletion ends, or {@code null}.
+	 * @param includeDirectories {@code true} to also remove matching directories with their contents.
+	 * @param dryRun             {@code true} to only count what would be deleted.
+	 */
+	public Deleter(String pattern, Path root, ExecutorService executorService, boolean includeDirectories,
+			boolean dryRun) {
 		this.pattern = pattern;
-		this.pathname = path.toPath();
+		this.pathname = root.toString();
+		this.executorService = executorService;
+		this.includeDirectories = includeDirectories;
+		this.summary = new DeleteSummary(dryRun);
+		this.targets = null;
+		this.groups = null;
+	}
+
+	/**
+	 * Constructs a {@code Deleter} for an explicit list of files, each deleted only if it
+	 * is unchanged since its record was taken.
+	 *
+	 * @param files           The files to delete.
+	 * @param executorService The {@link ExecutorService} shut down once the deletion ends, or {@code null}.
+	 * @param dryRun          {@code true} to only count what would be deleted.
+	 */
+	public Deleter(Collection<FileRecord> files, ExecutorService executorService, boolean dryRun) {
+		this.pattern = null;
+		this.pathname = null;
+		this.executorService = executorService;
+		this.includeDirectories = false;
+		this.summary = new DeleteSummary(dryRun);
+		this.targets = List.copyOf(files);
+		this.groups = null;
+	}
+
+	/**
+	 * Constructs a {@code Deleter} for the redundant copies of duplicate groups. Before a
+	 * group is touched its kept copy is checked: it must still have the size and
+	 * modification time it was hashed with and, read again, the group's hash.
+	 *
+	 * @param groups          The groups whose redundant copies are deleted.
+	 * @param executorService The {@link ExecutorService} shut down once the deletion ends, or {@code null}.
+	 * @param dryRun          {@code true} to only count what would be deleted.
+	 */
+	public Deleter(List<DuplicateGroup> groups, ExecutorService executorService, boolean dryRun) {
+		this.pattern = null;
+		this.pathname = null;
 		this.executorService = executorService;
+		this.includeDirectories = false;
+		this.summary = new DeleteSummary(dryRun);
+		this.groups = List.copyOf(groups);
+		List<FileRecord> redundant = new ArrayList<>();
+		this.groups.forEach(group -> redundant.addAll(group.getRedundant()));
+		this.targets = redundant;
 	}
 
 	/**
-	 * Traverses the file system and deletes files matching the pattern using {@link Files#walk}.
-	 * Logs each file deletion attempt and gracefully shuts down the executor service.
+	 * Traverses the file system with {@link TreeWalker} and deletes files matching the pattern,
+	 * and every file inside a matching directory, on a bounded pool, then removes the
+	 * emptied directories. Logs the summary and gracefully shuts down the executor service.
 	 */
 	@Override
 	public void run() {
-		Pattern compiledPattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+		if (targets != null) {
+			deleteTargets();
+			return;
+		}
+		NameMatcher matcher = NameMatcher.regex(pattern);
 		Path startPath = Paths.get(pathname);
+		ExecutorService deletions = Executors.newFixedThreadPool(DELETE_THREADS, FACTORY);
+		Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+		// Matching directories and every directory below them; a parent is always added before its children.
+		Set<Path> matchedDirectories = ConcurrentHashMap.newKeySet();
 
-		try (Stream<Path> paths = Files.walk(startPath)) {
-			paths
-				.filter(Files::isRegularFile)
-				.filter(path -> compiledPattern.matcher(path.getFileName().toString()).find())
-				.forEach(path -> {
+		progress.start();
+		summary.start();
+		try {
+			TreeWalker.walkRecords(startPath, rules, record -> {
+				Path path = record.getPath();
+				if (!matcher.matches(path.getFileName().toString())
+						&& !matchedDirectories.contains(path.getParent())) {
+					return;
+				}
+				inFlight.acquireUninterruptibly();
+				deletions.execute(FACTORY.instrument(() -> {
 					try {
-						Files.delete(path);
-						LOGGER.info("Deleted file: " + path);
-					} catch (IOException e) {
-						LOGGER.log(Level.WARNING, "Failed to delete file: " + path, e);
+						deleteFile(path, record.getSize());
+					} finally {
+						inFlight.release();
 					}
-				});
+				}));
+			}, !includeDirectories ? null : directory -> {
+				if (directory.equals(startPath)) {
+					return;
+				}
+				boolean matched = matchedDirectories.contains(directory.getParent())
+						|| matcher.matches(directory.getFileName().toString());
+				// Never delete through a followed link; only what lies below it by name.
+				if (matched && !(rules.isFollowLinks() && Files.isSymbolicLink(directory))) {
+					matchedDirectories.add(directory);
+				}
+			}, progress);
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, "Failed to traverse directory: " + pathname, e);
 		} finally {
-			executorService.shutdown();
+			deleteDirectories(deletions, matchedDirectories, startPath);
+			awaitDeletions(deletions);
+			forgetDeleted();
+			progress.finish();
+			summary.finish();
+			LOGGER.info(() -> String.format("%s under %s matching [%s].", summary, pathname, pattern));
+			if (executorService != null) {
+				executorService.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the explicit target files, or the duplicate groups one group per task, on
+	 * the bounded pool.
+	 */
+	private void deleteTargets() {
+		ExecutorService deletions = Executors.newFixedThreadPool(DELETE_THREADS, FACTORY);
+		Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+		List<Runnable> tasks = new ArrayList<>();
+		if (groups != null) {
+			groups.forEach(group -> tasks.add(() -> deleteRedundant(group)));
+		} else {
+			targets.forEach(record -> tasks.add(() -> deleteIfUnchanged(record)));
 		}
+		progress.start();
+		summary.start();
+		try {
+			for (Runnable task : tasks) {
+				if (progress.isCancelled()) {
+					break;
+				}
+				inFlight.acquireUninterruptibly();
+				deletions.execute(FACTORY.instrument(() -> {
+					try {
+						task.run();
+					} finally {
+						inFlight.release();
+					}
+				}));
+			}
+		} finally {
+			awaitDeletions(deletions);
+			forgetDeleted();
+			progress.finish();
+			summary.finish();
+			LOGGER.info(() -> String.format("%s of %,d selected files.", summary, targets.size()));
+			if (executorService != null) {
+				executorService.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the redundant copies of {@code group} if its kept copy is intact, or
+	 * counts them all as failed.
+	 */
+	private void deleteRedundant(DuplicateGroup group) {
+		FileRecord kept = group.getKept();
+		boolean intact = isUnchanged(kept);
+		if (intact) {
+			try {
+				intact = DuplicateFinder.contentHash(kept.getPath()).equals(group.getHash());
+			} catch (IOException e) {
+				intact = false;
+			}
+		}
+		if (!intact) {
+			LOGGER.warning(() -> "Kept copy " + kept.getPath() + " changed since it was hashed; not deleting its "
+					+ group.getRedundant().size() + " duplicates.");
+			group.getRedundant().forEach(record -> summary.fileFailed());
+			return;
+		}
+		group.getRedundant().forEach(this::deleteIfUnchanged);
+	}
+
+	private void deleteIfUnchanged(FileRecord record) {
+		if (isUnchanged(record)) {
+			deleteFile(record.getPath(), record.getSize());
+		} else {
+			summary.fileFailed();
+		}
+	}
+
+	private static boolean isUnchanged(FileRecord record) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(record.getPath(), BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+			if (attrs.size() == record.getSize() && attrs.lastModifiedTime().toMillis() == record.getLastModified()) {
+				return true;
+			}
+			LOGGER.fine(() -> "Changed since it was selected, not deleted: " + record.getPath());
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Failed to read attributes: " + record.getPath(), e);
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the subtrees and files the walk skips, protecting them from deletion. Deletes
+	 * under an {@link OSPath} start out with {@link PruneRules#forPath(OSPath)}.
+	 *
+	 * @param rules The rules to apply.
+	 */
+	public void setPruneRules(PruneRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Returns the live outcome of the current or last run.
+	 *
+	 * @return the deletion summary.
+	 */
+	public DeleteSummary getSummary() {
+		return summary;
+	}
+
+	/**
+	 * Deletes (or, in a dry run, counts) one file and records the outcome.
+	 *
+	 * @param size The size read when the file was visited; it is not read again.
+	 */
+	private void deleteFile(Path path, long size) {
+		try {
+			if (!summary.isDryRun()) {
+				Files.delete(path);
+				forgotten.add(path);
+				if (unforgotten.incrementAndGet() % FORGET_BATCH == 0) {
+					forgetDeleted();
+				}
+			}
+			summary.fileDeleted(size);
+		} catch (IOException e) {
+			summary.fileFailed();
+			LOGGER.log(Level.FINE, "Failed to delete file: " + path, e);
+		}
+	}
+
+	/**
+	 * Removes the matched directories, whose files the walk has deleted, deepest first.
+	 * The directories of one depth are removed together on the delete pool once the
+	 * deeper ones are gone. A directory that cannot be removed, e.g. because it still
+	 * holds a pruned or unreadable entry, is counted as failed.
+	 */
+	private void deleteDirectories(ExecutorService deletions, Set<Path> directories, Path root) {
+		if (directories.isEmpty()) {
+			return;
+		}
+		TreeMap<Integer, List<Callable<Void>>> levels = new TreeMap<>(Comparator.reverseOrder());
+		for (Path directory : directories) {
+			levels.computeIfAbsent(directory.getNameCount(), depth -> new ArrayList<>()).add(() -> {
+				deleteDirectory(directory, root);
+				return null;
+			});
+		}
+		try {
+			for (List<Callable<Void>> level : levels.values()) {
+				if (progress.isCancelled()) {
+					return;
+				}
+				deletions.invokeAll(level);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Removes one emptied directory, together with the symbolic links the walk does not
+	 * report (links to directories and dangling links); their targets are left alone.
+	 * A dry run counts the same links without deleting anything.
+	 */
+	private void deleteDirectory(Path directory, Path root) {
+		try {
+			try (DirectoryStream<Path> links = Files.newDirectoryStream(directory,
+					entry -> Files.isSymbolicLink(entry) && !Files.isRegularFile(entry))) {
+				for (Path link : links) {
+					if (!rules.excludes(root, link)) {
+						if (!summary.isDryRun()) {
+							Files.delete(link);
+						}
+						summary.fileDeleted(0);
+					}
+				}
+			}
+			if (!summary.isDryRun()) {
+				Files.delete(directory);
+			}
+			summary.directoryDeleted();
+		} catch (IOException | DirectoryIteratorException e) {
+			summary.directoryFailed();
+			LOGGER.log(Level.FINE, "Failed to delete directory: " + directory, e);
+		}
+	}
+
+	/**
+	 * Removes the files deleted so far from the shared filename indexes, in one batch.
+	 */
+	private void forgetDeleted() {
+		List<Path> batch = new ArrayList<>();
+		for (Path path = forgotten.poll(); path != null; path = forgotten.poll()) {
+			batch.add(path);
+		}
+		FilenameIndex.forget(batch);
+	}
+
+	private static void awaitDeletions(ExecutorService deletions) {
+		deletions.shutdown();
+		try {
+			deletions.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			deletions.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Registers a listener that receives periodic progress reports while the deletion runs.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public void addListener(ScanListener listener) {
+		progress.addListener(listener);
+	}
+
+	/**
+	 * Asks a running deletion to stop after the files it is currently handling.
+	 */
+	public void cancel() {
+		progress.cancel();
+	}
+
+	/**
+	 * Returns the progress of the current or last deletion.
+	 *
+	 * @return the scan progress.
+	 */
+	public ScanProgress getProgress() {
+		return progress;
 	}
 }
@@ -0,0 +1,358 @@
+package tasks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import factory.DaemonFactory;
+import interfaces.ScanListener;
+
+/**
+ * The {@code DuplicateFinder} class finds files with identical content in three stages,
+ * each narrowing the candidates before the next, more expensive one runs:
+ *
+ * <ol>
+ * <li>During the walk, files are grouped by size; only sizes shared by two or more
+ * files go on.</li>
+ * <li>Each remaining file is hashed over its first and last {@value #BLOCK} bytes.
+ * Hard links to the same file are counted once.</li>
+ * <li>Files still sharing a partial hash get a full SHA-256 over their memory-mapped
+ * content. Files no longer than two blocks skip this stage, since their partial hash
+ * already covers everything.</li>
+ * </ol>
+ *
+ * The hashing stages run on a pool of {@code filesearcher.hash.threads} threads. Hashes
+ * are kept in a {@link HashCache} keyed by path, size and modification time, so a rerun
+ * only reads files that changed. Symbolic links are ignored. The redundant copies of
+ * the resulting {@link DuplicateGroup}s can be removed with
+ * {@link Deleter#Deleter(List, java.util.concurrent.ExecutorService, boolean)}, which
+ * checks that each kept copy is still intact first.
+ */
+public class DuplicateFinder implements Callable<List<DuplicateGroup>> {
+
+	private static final Logger LOGGER = Logger.getLogger(DuplicateFinder.class.getName());
+
+	/** Bytes hashed at each end of a file in the partial stage. */
+	private static final int BLOCK = 4096;
+
+	/** Largest region mapped at once for the full hash. */
+	private static final int MAX_CHUNK = 1 << 28;
+
+	private static final int THREADS = Integer.getInteger("filesearcher.hash.threads",
+			Runtime.getRuntime().availableProcessors());
+
+	private static final DaemonFactory FACTORY = new DaemonFactory("Hash Factory");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final List<Path> roots;
+	private final Predicate<FileRecord> files;
+	private final long minSize;
+	private final HashCache cache;
+	private PruneRules rules = PruneRules.NONE;
+
+	private final ScanProgress progress = new ScanProgress();
+	private final LongAdder hashedBytes = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * Constructs a duplicate search.
+	 *
+	 * @param roots   The directories to search together; duplicates across roots are found,
+	 *                and a directory reachable from several roots is walked once.
+	 * @param files   Selects the files considered, e.g. by name.
+	 * @param minSize Smallest file size considered, in bytes; at least 1.
+	 * @param cache   Cache of earlier hashes, updated and saved by this search.
+	 */
+	public DuplicateFinder(List<Path> roots, Predicate<FileRecord> files, long minSize, HashCache cache) {
+		this.roots = List.copyOf(roots);
+		this.files = files;
+		this.minSize = Math.max(1, minSize);
+		this.cache = cache;
+	}
+
+	/**
+	 * Runs the three stages and returns the duplicate groups, most wasted space first.
+	 *
+	 * @return the groups of identical files.
+	 */
+	@Override
+	public List<DuplicateGroup> call() {
+		progress.start();
+		List<DuplicateGroup> groups = new ArrayList<>();
+		int bySize = 0;
+		int byPartial = 0;
+		try {
+			Map<Long, Queue<FileRecord>> sizes = new ConcurrentHashMap<>();
+			try {
+				TreeWalker.walkRecords(roots, rules, record -> {
+					if (!record.isSymbolicLink() && record.getSize() >= minSize && files.test(record)) {
+						sizes.computeIfAbsent(record.getSize(), size -> new ConcurrentLinkedQueue<>()).add(record);
+					}
+				}, null, progress);
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, "Failed to traverse directories: " + roots, e);
+			}
+
+			List<List<FileRecord>> candidates = new ArrayList<>();
+			for (Queue<FileRecord> group : sizes.values()) {
+				if (group.size() > 1) {
+					candidates.add(new ArrayList<>(group));
+				}
+			}
+			sizes.clear();
+			bySize = count(candidates);
+
+			Map<FileRecord, Object> keys = new ConcurrentHashMap<>();
+			Map<FileRecord, String> partial = hashAll(candidates, false, keys);
+			candidates = regroup(candidates, partial, keys);
+			byPartial = count(candidates);
+
+			List<List<FileRecord>> large = new ArrayList<>();
+			for (List<FileRecord> group : candidates) {
+				if (group.get(0).getSize() > 2L * BLOCK) {
+					large.add(group);
+				} else {
+					groups.add(new DuplicateGroup(group.get(0).getSize(), partial.get(group.get(0)), group));
+				}
+			}
+			Map<FileRecord, String> full = hashAll(large, true, null);
+			for (List<FileRecord> group : regroup(large, full, keys)) {
+				groups.add(new DuplicateGroup(group.get(0).getSize(), full.get(group.get(0)), group));
+			}
+			groups.sort(Comparator.comparingLong(DuplicateGroup::getWastedBytes).reversed());
+		} finally {
+			progress.finish();
+			cache.save();
+			long wasted = groups.stream().mapToLong(DuplicateGroup::getWastedBytes).sum();
+			int sized = bySize;
+			int partials = byPartial;
+			LOGGER.info(() -> String.format(
+					"Found %,d duplicate groups (%.1f MB reclaimable) under %s: %,d candidates by size, %,d by partial hash; hashed %.1f MB, %,d hashes cached, %,d unreadable, in %d ms.",
+					groups.size(), wasted / 1e6, roots, sized, partials, hashedBytes.sum() / 1e6, cacheHits.sum(),
+					failures.sum(), progress.getElapsedMillis()));
+		}
+		return groups;
+	}
+
+	/**
+	 * Sets the subtrees and files the walk skips; by default nothing is skipped.
+	 *
+	 * @param rules The rules to apply.
+	 */
+	public void setPruneRules(PruneRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Registers a listener that receives periodic progress reports during the walk.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public void addListener(ScanListener listener) {
+		progress.addListener(listener);
+	}
+
+	/**
+	 * Asks a running search to stop; the groups confirmed so far are returned.
+	 */
+	public void cancel() {
+		progress.cancel();
+	}
+
+	/**
+	 * @return The progress of the walk.
+	 */
+	public ScanProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * @return Bytes read for hashing, excluding cached hashes.
+	 */
+	public long getHashedBytes() {
+		return hashedBytes.sum();
+	}
+
+	/**
+	 * Hashes every file of {@code groups} in parallel, taking cached hashes where valid.
+	 * Files that cannot be read are left out of the result. When {@code keys} is given,
+	 * each file's identity (its file key, or its absolute path where the platform has
+	 * none) is recorded there too, so hard links can be told apart from copies.
+	 */
+	private Map<FileRecord, String> hashAll(List<List<FileRecord>> groups, boolean full, Map<FileRecord, Object> keys) {
+		Map<FileRecord, String> hashes = new ConcurrentHashMap<>();
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS, FACTORY);
+		try {
+			for (List<FileRecord> group : groups) {
+				for (FileRecord record : group) {
+					pool.execute(FACTORY.instrument(() -> {
+						if (progress.isCancelled()) {
+							return;
+						}
+						if (keys != null) {
+							try {
+								Object key = Files.readAttributes(record.getPath(), BasicFileAttributes.class).fileKey();
+								keys.put(record, key != null ? key : record.getPath().toAbsolutePath());
+							} catch (IOException e) {
+								failures.increment();
+								return;
+							}
+						}
+						String hash = cache.get(record, full);
+						if (hash != null) {
+							cacheHits.increment();
+						} else {
+							try {
+								hash = full ? fullHash(record) : partialHash(record);
+								cache.put(record, full, hash);
+							} catch (IOException e) {
+								failures.increment();
+								LOGGER.log(Level.FINE, "Failed to hash: " + record.getPath(), e);
+								return;
+							}
+						}
+						hashes.put(record, hash);
+					}));
+				}
+			}
+		} finally {
+			pool.shutdown();
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				pool.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+		return hashes;
+	}
+
+	/**
+	 * Splits each group by hash, keeping one path per underlying file so hard links and
+	 * overlapping roots are not reported as copies of themselves, and keeps the
+	 * subgroups that still have at least two files.
+	 */
+	private static List<List<FileRecord>> regroup(List<List<FileRecord>> groups, Map<FileRecord, String> hashes,
+			Map<FileRecord, Object> keys) {
+		List<List<FileRecord>> refined = new ArrayList<>();
+		for (List<FileRecord> group : groups) {
+			Map<String, Map<Object, FileRecord>> byHash = new HashMap<>();
+			for (FileRecord record : group) {
+				String hash = hashes.get(record);
+				if (hash != null) {
+					byHash.computeIfAbsent(hash, h -> new LinkedHashMap<>()).putIfAbsent(keys.get(record), record);
+				}
+			}
+			for (Map<Object, FileRecord> same : byHash.values()) {
+				if (same.size() > 1) {
+					refined.add(new ArrayList<>(same.values()));
+				}
+			}
+		}
+		return refined;
+	}
+
+	private String partialHash(FileRecord record) throws IOException {
+		MessageDigest digest = sha256();
+		try (FileChannel channel = FileChannel.open(record.getPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, 2L * BLOCK));
+			if (size <= 2L * BLOCK) {
+				readFully(channel, buffer, 0);
+			} else {
+				buffer.limit(BLOCK);
+				readFully(channel, buffer, 0);
+				buffer.limit(2 * BLOCK);
+				readFully(channel, buffer, size - BLOCK);
+			}
+			buffer.flip();
+			hashedBytes.add(buffer.remaining());
+			digest.update(buffer);
+		}
+		return hex(digest.digest());
+	}
+
+	private String fullHash(FileRecord record) throws IOException {
+		MessageDigest digest = sha256();
+		try (FileChannel channel = FileChannel.open(record.getPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size && !progress.isCancelled(); position += MAX_CHUNK) {
+				long length = Math.min(MAX_CHUNK, size - position);
+				digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+				hashedBytes.add(length);
+			}
+			if (progress.isCancelled()) {
+				throw new IOException("Cancelled while hashing " + record.getPath());
+			}
+		}
+		return hex(digest.digest());
+	}
+
+	/**
+	 * Computes the SHA-256 of a whole file, as {@link DuplicateGroup#getHash()} holds it
+	 * for every group whatever stage confirmed it.
+	 *
+	 * @param file The file to hash.
+	 * @return The hex-encoded hash.
+	 * @throws IOException If the file cannot be read.
+	 */
+	static String contentHash(Path file) throws IOException {
+		MessageDigest digest = sha256();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		return hex(digest.digest());
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("File shrank while hashing");
+			}
+			position += read;
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		char[] text = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			text[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+			text[2 * i + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(text);
+	}
+
+	private static int count(List<List<FileRecord>> groups) {
+		int count = 0;
+		for (List<FileRecord> group : groups) {
+			count += group.size();
+		}
+		return count;
+	}
+}
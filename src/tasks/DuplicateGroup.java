@@ -0,0 +1,69 @@
+package tasks;
+
+import java.util.*;
+
+/**
+ * A set of files with identical content found by {@link DuplicateFinder}. The oldest
+ * file is the one kept; the others are redundant copies.
+ */
+public final class DuplicateGroup {
+
+	private final long size;
+	private final String hash;
+	private final List<FileRecord> files;
+
+	/**
+	 * @param size  Size of each file in bytes.
+	 * @param hash  Hex-encoded content hash shared by the files.
+	 * @param files The files; at least two.
+	 */
+	public DuplicateGroup(long size, String hash, List<FileRecord> files) {
+		this.size = size;
+		this.hash = hash;
+		List<FileRecord> sorted = new ArrayList<>(files);
+		sorted.sort(Comparator.comparingLong(FileRecord::getLastModified)
+				.thenComparing(record -> record.getPath().toString()));
+		this.files = Collections.unmodifiableList(sorted);
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public String getHash() {
+		return hash;
+	}
+
+	/**
+	 * @return All files of the group, oldest first.
+	 */
+	public List<FileRecord> getFiles() {
+		return files;
+	}
+
+	/**
+	 * @return The oldest copy, which is kept.
+	 */
+	public FileRecord getKept() {
+		return files.get(0);
+	}
+
+	/**
+	 * @return Every copy except the kept one.
+	 */
+	public List<FileRecord> getRedundant() {
+		return files.subList(1, files.size());
+	}
+
+	/**
+	 * @return Bytes freed by deleting the redundant copies.
+	 */
+	public long getWastedBytes() {
+		return size * (files.size() - 1);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%,d copies of %,d bytes [%s]", files.size(), size, hash);
+	}
+}
@@ -4,11 +4,13 @@ import java.io.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 import enumerations.OSPath;
 import interfaces.Clean;
+import interfaces.ScanListener;
 
 /**
  * The {@code FileEditor} class is responsible for locating files within a specified
@@ -17,21 +19,54 @@ import interfaces.Clean;
  * It implements the {@link Clean} interface for output display functionality,
  * and {@link Callable} to allow concurrent execution and return the count of matched files.
  * 
- * This class is optimized with Java NIO {@code Files.walk()} for efficient traversal.
+ * Traversal is delegated to the parallel {@link TreeWalker}, so subtrees are scanned concurrently.
+ * Matches are kept in a columnar {@link ResultStore} with the size and modification time
+ * read during the walk, so displaying them does not touch the file system again.
+ * Keyword searches given a {@link QueryCache} are answered from it when possible and
+ * stored in it otherwise.
+ *
+ * Directories that cannot be read are skipped and listed as {@link ScanError}s in
+ * {@link #getProgress()}; the matches found elsewhere are still returned.
  */
 public class FileEditor implements Clean, Callable<Integer> {
 
-	/** The keyword or pattern to match against file names. */
+	private static final Logger LOGGER = Logger.getLogger(FileEditor.class.getName());
+
+	/** The keyword to match against file names; {@code null} when built from a compiled matcher. */
 	private final String pattern;
 
+	/** The compiled form of {@link #pattern} applied to every file name. */
+	private final NameMatcher matcher;
+
 	/** String representation of the base directory path. */
 	private final String pathname;
 
-	/** The base directory path as a {@link Path} object. */
+	/** The base directory path as a {@link Path} object; the first root of a multi-root search. */
 	private final Path basePath;
 
+	/** Every directory searched; a single root unless built from a list of roots. */
+	private final List<Path> roots;
+
 	/** Final collection of matched files. */
-	private Set<File> finalFiles;
+	private ResultStore finalFiles;
+
+	/** Optional stage receiving each match as it is found; when set, matches are not collected. */
+	private final Consumer<FileRecord> sink;
+
+	/** Whether matches are answered from the shared {@link FilenameIndex} instead of a fresh walk. */
+	private final boolean indexed;
+
+	/** Cache consulted before and filled after a keyword search, or {@code null}. */
+	private QueryCache cache;
+
+	/** Subtrees and files skipped by the walk and left out of the index. */
+	private PruneRules rules = PruneRules.NONE;
+
+	/** Progress counters and cancellation flag of the running scan. */
+	private final ScanProgress progress = new ScanProgress();
+
+	/** Number of files matched by the last call to {@link #Edit()}. */
+	private int matchCount;
 
 	/**
 	 * Constructs a {@code FileEditor} using an existing set of files.
@@ -43,8 +78,15 @@ public class FileEditor implements Clean, Callable<Integer> {
 	public FileEditor(HashSet<File> fileArray, String pattern, OSPath path) {
 		this.pathname = path.toPath();
 		this.pattern = pattern;
+		this.matcher = NameMatcher.substring(pattern);
 		this.basePath = Paths.get(this.pathname);
-		this.finalFiles = new HashSet<>(fileArray);
+		this.roots = List.of(basePath);
+		this.finalFiles = new ResultStore();
+		for (File file : fileArray) {
+			finalFiles.add(new FileRecord(file.toPath(), file.length(), file.lastModified(), FileRecord.REGULAR));
+		}
+		this.sink = null;
+		this.indexed = false;
 	}
 
 	/**
@@ -55,10 +97,89 @@ public class FileEditor implements Clean, Callable<Integer> {
 	 * @param path    Enumeration for the root search path.
 	 */
 	public FileEditor(String pattern, OSPath path) {
-		this.pathname = path.toPath();
+		this(pattern, path, null);
+	}
+
+	/**
+	 * Constructs a {@code FileEditor} that streams every match to {@code sink} during
+	 * the traversal instead of collecting them, so a single pass over the tree feeds
+	 * the caller directly and {@link #getFinalFiles()} stays empty.
+	 *
+	 * @param pattern Keyword used to filter files.
+	 * @param path    Enumeration for the root search path.
+	 * @param sink    Thread-safe consumer receiving each matched file, or {@code null} to collect.
+	 */
+	public FileEditor(String pattern, OSPath path, Consumer<FileRecord> sink) {
+		this(pattern, path, sink, false);
+	}
+
+	/**
+	 * Constructs a streaming {@code FileEditor} that can answer from the shared
+	 * {@link FilenameIndex} of its root. The first indexed search of a root builds the
+	 * index during its own traversal, streaming matches as it finds them; later searches
+	 * only consult the index.
+	 *
+	 * @param pattern Keyword used to filter files.
+	 * @param path    Enumeration for the root search path.
+	 * @param sink    Thread-safe consumer receiving each matched file, or {@code null} to collect.
+	 * @param indexed {@code true} to search the filename index instead of walking the tree.
+	 */
+	public FileEditor(String pattern, OSPath path, Consumer<FileRecord> sink, boolean indexed) {
+		this(pattern, Paths.get(path.toPath()), sink, indexed);
+		this.rules = PruneRules.forPath(path);
+	}
+
+	/**
+	 * Constructs a streaming {@code FileEditor} over an arbitrary directory.
+	 *
+	 * @param pattern Keyword used to filter files.
+	 * @param root    The directory (or single file) to search.
+	 * @param sink    Thread-safe consumer receiving each matched file, or {@code null} to collect.
+	 * @param indexed {@code true} to search the filename index instead of walking the tree.
+	 */
+	public FileEditor(String pattern, Path root, Consumer<FileRecord> sink, boolean indexed) {
+		this.pathname = root.toString();
 		this.pattern = pattern;
-		this.basePath = Paths.get(this.pathname);
-		this.finalFiles = new HashSet<>();
+		this.matcher = NameMatcher.substring(pattern);
+		this.basePath = root;
+		this.roots = List.of(root);
+		this.finalFiles = new ResultStore();
+		this.sink = sink;
+		this.indexed = indexed;
+	}
+
+	/**
+	 * Constructs a streaming {@code FileEditor} over an arbitrary directory with an
+	 * already compiled matcher, e.g. a glob or several alternatives. It always walks
+	 * the tree, since the filename index only answers plain keywords.
+	 *
+	 * @param root    The directory (or single file) to search.
+	 * @param matcher Matcher applied to each file name.
+	 * @param sink    Thread-safe consumer receiving each matched file, or {@code null} to collect.
+	 */
+	public FileEditor(Path root, NameMatcher matcher, Consumer<FileRecord> sink) {
+		this(List.of(root), matcher, sink);
+	}
+
+	/**
+	 * Constructs a streaming {@code FileEditor} that searches several roots at once,
+	 * e.g. user-supplied paths or mount points. The roots are walked concurrently into
+	 * one stream; nested or overlapping roots and directories reachable twice are read
+	 * only once, as by {@link TreeWalker#walkRecords(Collection, Consumer, Consumer, ScanProgress)}.
+	 *
+	 * @param roots   The directories (or single files) to search.
+	 * @param matcher Matcher applied to each file name.
+	 * @param sink    Thread-safe consumer receiving each matched file, or {@code null} to collect.
+	 */
+	public FileEditor(List<Path> roots, NameMatcher matcher, Consumer<FileRecord> sink) {
+		this.roots = List.copyOf(roots);
+		this.pathname = String.join(File.pathSeparator, this.roots.stream().map(Path::toString).toList());
+		this.pattern = null;
+		this.matcher = matcher;
+		this.basePath = this.roots.get(0);
+		this.finalFiles = new ResultStore();
+		this.sink = sink;
+		this.indexed = false;
 	}
 
 	/**
@@ -70,36 +191,130 @@ public class FileEditor implements Clean, Callable<Integer> {
 	@Override
 	public Integer call() {
 		Edit();
-		return finalFiles.size();
+		return matchCount;
 	}
 
 	/**
-	 * Performs the core logic: walks through the directory structure and
-	 * filters files whose names match the specified pattern.
+	 * Performs the core logic: walks through the directory structure (or queries the
+	 * filename index when enabled) and filters files whose names match the specified pattern.
 	 */
 	@Override
 	public void Edit() {
+		progress.start();
+		// A cached search needs the complete result set even when it is streamed.
+		ResultStore matches = new ResultStore();
+		AtomicInteger count = new AtomicInteger();
 		try {
-			Predicate<Path> matcher = p -> {
-				String name = p.getFileName().toString().toLowerCase();
-				String lowerPattern = pattern.toLowerCase();
-				return name.contains(lowerPattern) ||
-						name.startsWith(lowerPattern) ||
-						name.endsWith(lowerPattern);
-			};
+			QueryCache queries = pattern != null ? cache : null;
+			ResultStore cached = queries != null ? queries.lookup(basePath, pattern) : null;
+			if (cached != null) {
+				if (sink != null) {
+					cached.forEach(sink);
+				}
+				finalFiles = sink != null ? new ResultStore() : cached;
+				matchCount = cached.size();
+				return;
+			}
 
-			finalFiles = Files.walk(basePath)
-				.filter(Files::isRegularFile)
-				.filter(p -> matcher.test(p))
-				.map(Path::toFile)
-				.collect(Collectors.toSet());
+			Consumer<FileRecord> target = sink == null ? matches::add
+					: queries == null ? sink : record -> {
+						matches.add(record);
+						sink.accept(record);
+					};
+			QueryCache.DirectorySnapshot snapshot = queries != null ? new QueryCache.DirectorySnapshot() : null;
+			Consumer<FileRecord> visit = record -> {
+				if (matcher.matches(record.getPath().getFileName().toString())) {
+					target.accept(record);
+					count.incrementAndGet();
+				}
+			};
+			Consumer<Path> directories = snapshot == null ? null : snapshot::record;
+			// Until the index is built, the search walks the tree, building the index on the way.
+			FilenameIndex index = indexed && !progress.isCancelled()
+					? FilenameIndex.forRoot(basePath, rules, progress, visit, directories)
+					: null;
+			if (index != null) {
+				long version = index.getVersion();
+				// The index stores names only, so each hit is read once here.
+				for (Path p : index.search(pattern)) {
+					try {
+						target.accept(FileRecord.read(p));
+						count.incrementAndGet();
+					} catch (IOException e) {
+						// Deleted since it was indexed; the watcher will catch up.
+					}
+				}
+				if (queries != null) {
+					queries.put(basePath, pattern, matches, index, version);
+				}
+			} else if (!progress.isCancelled()) {
+				if (!indexed) {
+					TreeWalker.walkRecords(roots, rules, visit, directories, progress);
+				}
+				// A walk that hit unreadable directories is not cached, so a later search retries them.
+				if (snapshot != null && !progress.isCancelled() && progress.getErrorCount() == 0) {
+					queries.put(basePath, pattern, matches, snapshot);
+				}
+			}
+			finalFiles = sink != null ? new ResultStore() : matches;
+			matchCount = count.get();
 
 		} catch (IOException e) {
-			e.printStackTrace();
-			finalFiles = Collections.emptySet();
+			// Recorded in the progress; whatever was found before the failure is kept.
+			LOGGER.warning(() -> "Search of " + pathname + " failed: " + e);
+			finalFiles = sink != null ? new ResultStore() : matches;
+			matchCount = count.get();
+		} finally {
+			progress.finish();
 		}
 	}
 
+	/**
+	 * Lets keyword searches be answered from {@code cache}, and stores the results of
+	 * completed searches in it. Matches served from the cache are replayed to the sink
+	 * at once, without touching the file system.
+	 *
+	 * @param cache The cache to use, or {@code null} to always search.
+	 */
+	public void setCache(QueryCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets the subtrees and files to skip. Searches of an {@link OSPath} start out with
+	 * {@link PruneRules#forPath(OSPath)}, other searches skip nothing.
+	 *
+	 * @param rules The rules to apply.
+	 */
+	public void setPruneRules(PruneRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Registers a listener that receives periodic progress reports while {@link #Edit()} runs.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public void addListener(ScanListener listener) {
+		progress.addListener(listener);
+	}
+
+	/**
+	 * Asks a running scan to stop. Matches found so far are kept.
+	 */
+	public void cancel() {
+		progress.cancel();
+	}
+
+	/**
+	 * Returns the progress of the current or last scan.
+	 *
+	 * @return the scan progress.
+	 */
+	public ScanProgress getProgress() {
+		return progress;
+	}
+
 	/**
 	 * Displays file names of the filtered result set.
 	 */
@@ -109,7 +324,7 @@ public class FileEditor implements Clean, Callable<Integer> {
 			System.out.println("No files found.");
 			return;
 		}
-		finalFiles.forEach(file -> System.out.println(file.getName()));
+		finalFiles.forEach(record -> System.out.println(record.getName()));
 	}
 
 	/**
@@ -117,7 +332,7 @@ public class FileEditor implements Clean, Callable<Integer> {
 	 */
 	@Override
 	public void DisplayName() {
-		displayFiles("NAME", File::getName);
+		displayFiles("NAME", FileRecord::getName);
 	}
 
 	/**
@@ -125,7 +340,7 @@ public class FileEditor implements Clean, Callable<Integer> {
 	 */
 	@Override
 	public void DisplayPath() {
-		displayFiles("PATH", file -> String.format("%s\n[*]Path: %s", file.getName(), file.getPath()));
+		displayFiles("PATH", record -> String.format("%s\n[*]Path: %s", record.getName(), record.getPath()));
 	}
 
 	/**
@@ -133,7 +348,7 @@ public class FileEditor implements Clean, Callable<Integer> {
 	 */
 	@Override
 	public void DisplayFileSize() {
-		displayFiles("FILESIZE", file -> String.format("%s --- Size: %d Bytes", file.getName(), file.length()));
+		displayFiles("FILESIZE", record -> String.format("%s --- Size: %d Bytes", record.getName(), record.getSize()));
 	}
 
 	/**
@@ -142,6 +357,19 @@ public class FileEditor implements Clean, Callable<Integer> {
 	 * @return a set of files matching the search criteria.
 	 */
 	public Set<File> getFinalFiles() {
+		Set<File> files = new HashSet<>();
+		for (FileRecord record : finalFiles) {
+			files.add(record.toFile());
+		}
+		return files;
+	}
+
+	/**
+	 * Returns the matched files together with the attributes read while finding them.
+	 *
+	 * @return the compact store of matching files, in no particular order.
+	 */
+	public ResultStore getFinalRecords() {
 		return finalFiles;
 	}
 
@@ -168,17 +396,17 @@ public class FileEditor implements Clean, Callable<Integer> {
 			return;
 		}
 		int count = 0;
-		for (var file : finalFiles) {
-			System.out.printf("[*] File: %d --- %s [*]\n", ++count, formatter.format(file));
+		for (var record : finalFiles) {
+			System.out.printf("[*] File: %d --- %s [*]\n", ++count, formatter.format(record));
 		}
 		System.out.println("====================================================================\n");
 	}
 
 	/**
-	 * Functional interface to format a {@link File} object as a string.
+	 * Functional interface to format a {@link FileRecord} as a string.
 	 */
 	@FunctionalInterface
 	private interface DisplayFormatter {
-		String format(File file);
+		String format(FileRecord record);
 	}
 }
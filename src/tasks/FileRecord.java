@@ -0,0 +1,93 @@
+package tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * The {@code FileRecord} class is a compact, immutable view of one regular file and
+ * the attributes read for it during traversal: size, modification time and type flags.
+ * Carrying it with each result means consumers never stat the file a second time.
+ */
+public final class FileRecord {
+
+	/** Flag set when the entry is a symbolic link to a regular file. */
+	public static final int SYMBOLIC_LINK = 1;
+
+	/** Flag set when the entry is a regular file other than a link. */
+	public static final int REGULAR = 2;
+
+	private final Path path;
+	private final long size;
+	private final long lastModified;
+	private final byte flags;
+
+	/**
+	 * @param path         The file.
+	 * @param size         Size in bytes.
+	 * @param lastModified Modification time in milliseconds since the epoch.
+	 * @param flags        Combination of {@link #SYMBOLIC_LINK} and {@link #REGULAR}.
+	 */
+	public FileRecord(Path path, long size, long lastModified, int flags) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.flags = (byte) flags;
+	}
+
+	/**
+	 * Builds a record from attributes that were already read.
+	 *
+	 * @param path          The file.
+	 * @param attrs         Its attributes (of the link target for symbolic links).
+	 * @param symbolicLink  {@code true} if {@code path} itself is a symbolic link.
+	 * @return The record.
+	 */
+	public static FileRecord of(Path path, BasicFileAttributes attrs, boolean symbolicLink) {
+		return new FileRecord(path, attrs.size(), attrs.lastModifiedTime().toMillis(),
+				symbolicLink ? SYMBOLIC_LINK : REGULAR);
+	}
+
+	/**
+	 * Reads the attributes of {@code path} once and builds a record, for results that
+	 * did not come from a traversal, such as index hits.
+	 *
+	 * @param path The file.
+	 * @return The record.
+	 * @throws IOException If the attributes cannot be read.
+	 */
+	public static FileRecord read(Path path) throws IOException {
+		return of(path, Files.readAttributes(path, BasicFileAttributes.class), Files.isSymbolicLink(path));
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public String getName() {
+		return path.getFileName().toString();
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public boolean isSymbolicLink() {
+		return (flags & SYMBOLIC_LINK) != 0;
+	}
+
+	public File toFile() {
+		return path.toFile();
+	}
+
+	@Override
+	public String toString() {
+		return path.toString();
+	}
+}
@@ -0,0 +1,299 @@
+package tasks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import factory.DaemonFactory;
+
+/**
+ * The {@code FileSearch} class is the programmatic entry point to the search engine. It
+ * hands out the files of one or more trees, as {@link FileRecord}s, either as a lazy
+ * {@link Stream} or as a {@link Flow.Publisher}, without ever holding the whole result set.
+ *
+ * The walk is driven by its consumer: a directory is only listed when the files read so
+ * far have all been taken, so nothing is read before the first file is requested, a
+ * slow consumer slows the walk down, and a consumer that stops asking stops the walk.
+ * Besides the files of the directory listed last, only the directories still to be
+ * listed are held in memory.
+ *
+ * <ul>
+ * <li>{@link #stream()} can be consumed sequentially or in parallel; a parallel stream
+ * hands pending subtrees to other threads. Short-circuiting operations such as
+ * {@code limit} or {@code findFirst} list no further directories once they are done.</li>
+ * <li>{@link #publisher()} walks once per subscriber, on a thread of its own, and only
+ * while files are requested; cancelling the subscription stops the walk.</li>
+ * </ul>
+ *
+ * Directories that cannot be read are skipped, as by {@link TreeWalker}. Only when none
+ * of the roots can be read does the stream throw an {@link UncheckedIOException}, or
+ * the publisher signal {@code onError}.
+ */
+public class FileSearch {
+
+	private static final Logger LOGGER = Logger.getLogger(FileSearch.class.getName());
+
+	/** Most directories listed ahead to find pending subtrees when a parallel stream splits. */
+	private static final int SPLIT_LISTINGS = 16;
+
+	private static final DaemonFactory FACTORY = new DaemonFactory("Stream Factory");
+
+	private final List<Path> roots;
+	private final Predicate<FileRecord> files;
+	private PruneRules rules = PruneRules.NONE;
+
+	/**
+	 * Constructs a search of one tree.
+	 *
+	 * @param root  The directory (or single file) to search.
+	 * @param files Selects the files returned, e.g. by name.
+	 */
+	public FileSearch(Path root, Predicate<FileRecord> files) {
+		this(List.of(root), files);
+	}
+
+	/**
+	 * Constructs a search of several trees, walked together as by
+	 * {@link TreeWalker#walkRecords(java.util.Collection, PruneRules, Consumer, Consumer, ScanProgress)}.
+	 *
+	 * @param roots The directories (or single files) to search.
+	 * @param files Selects the files returned, e.g. by name.
+	 */
+	public FileSearch(List<Path> roots, Predicate<FileRecord> files) {
+		this.roots = List.copyOf(roots);
+		this.files = files;
+	}
+
+	/**
+	 * Sets the subtrees and files the walks skip; by default nothing is skipped.
+	 *
+	 * @param rules The rules to apply.
+	 */
+	public void setPruneRules(PruneRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Returns the matching files as a lazy stream, in no particular order. The walk
+	 * starts with the first terminal operation and goes only as far as it needs to.
+	 *
+	 * @return A stream that can be consumed once.
+	 */
+	public Stream<FileRecord> stream() {
+		Walker walker = new Walker(new ScanProgress(), null);
+		return StreamSupport.stream(walker, false).onClose(walker::cancel);
+	}
+
+	/**
+	 * Returns a publisher of the matching files. Every subscriber gets its own walk and
+	 * receives its files on a dedicated thread, never more than it has requested.
+	 *
+	 * @return A cold publisher.
+	 */
+	public Flow.Publisher<FileRecord> publisher() {
+		return subscriber -> {
+			Objects.requireNonNull(subscriber);
+			Delivery delivery = new Delivery(subscriber, new Walker(new ScanProgress(), null));
+			subscriber.onSubscribe(delivery);
+			FACTORY.newThread(FACTORY.instrument(delivery)).start();
+		};
+	}
+
+	/**
+	 * Part of one walk, listed on demand on the thread that consumes it. Splitting hands
+	 * half of its pending subtrees to a new walker that shares its progress, so closing
+	 * the stream or cancelling the subscription stops every part.
+	 */
+	private final class Walker implements Spliterator<FileRecord> {
+
+		private final ScanProgress progress;
+		private final Deque<FileRecord> ready = new ArrayDeque<>();
+		private final Consumer<FileRecord> sink = record -> {
+			if (files.test(record)) {
+				ready.add(record);
+			}
+		};
+
+		/** The directories this walker lists; opened on first use unless split off. */
+		private TreeWalker.Cursor cursor;
+
+		Walker(ScanProgress progress, TreeWalker.Cursor cursor) {
+			this.progress = progress;
+			this.cursor = cursor;
+		}
+
+		/**
+		 * Returns the next match, listing directories until one is found.
+		 *
+		 * @return The next file, or {@code null} once the walk has ended or was cancelled.
+		 * @throws UncheckedIOException If none of the roots could be read.
+		 */
+		FileRecord next() {
+			open();
+			while (ready.isEmpty()) {
+				if (progress.isCancelled() || !cursor.advance(sink)) {
+					return null;
+				}
+			}
+			return ready.poll();
+		}
+
+		/**
+		 * Stops the walk; idempotent, and safe to call from any thread.
+		 */
+		void cancel() {
+			progress.cancel();
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super FileRecord> action) {
+			FileRecord next = next();
+			if (next == null) {
+				return false;
+			}
+			action.accept(next);
+			return true;
+		}
+
+		@Override
+		public Spliterator<FileRecord> trySplit() {
+			open();
+			for (int i = 0; i < SPLIT_LISTINGS && cursor.pending() < 2 && !progress.isCancelled(); i++) {
+				if (!cursor.advance(sink)) {
+					break;
+				}
+			}
+			TreeWalker.Cursor other = cursor.split();
+			return other == null ? null : new Walker(progress, other);
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.NONNULL;
+		}
+
+		private void open() {
+			if (cursor != null) {
+				return;
+			}
+			try {
+				cursor = TreeWalker.cursor(roots, rules, sink, progress);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			LOGGER.fine(() -> "Streaming " + roots);
+		}
+	}
+
+	/**
+	 * Delivers the files of one walk to one subscriber, as far as it has requested them.
+	 * All signals come from the delivery thread, so they never overlap.
+	 */
+	private static final class Delivery implements Flow.Subscription, Runnable {
+
+		private final Flow.Subscriber<? super FileRecord> subscriber;
+		private final FileSearch.Walker walker;
+
+		/** Files requested but not yet delivered; guarded by {@code this}. */
+		private long demand;
+		private boolean cancelled;
+		private IllegalArgumentException invalid;
+
+		Delivery(Flow.Subscriber<? super FileRecord> subscriber, FileSearch.Walker walker) {
+			this.subscriber = subscriber;
+			this.walker = walker;
+		}
+
+		@Override
+		public synchronized void request(long n) {
+			if (n <= 0) {
+				invalid = new IllegalArgumentException("Non-positive request: " + n);
+			} else {
+				demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+			}
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void cancel() {
+			cancelled = true;
+			walker.cancel();
+			notifyAll();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (awaitDemand()) {
+					FileRecord next = walker.next();
+					if (next == null) {
+						if (!isCancelled()) {
+							subscriber.onComplete();
+						}
+						return;
+					}
+					subscriber.onNext(next);
+				}
+			} catch (UncheckedIOException e) {
+				subscriber.onError(e.getCause());
+			} catch (RuntimeException e) {
+				// A subscriber that throws is treated as cancelled.
+				LOGGER.log(Level.WARNING, "Subscriber failed, cancelling the search", e);
+				cancel();
+			}
+		}
+
+		/**
+		 * Waits until the subscriber wants another file and takes it from the demand.
+		 *
+		 * @return {@code false} if the subscription ended instead.
+		 */
+		private boolean awaitDemand() {
+			IllegalArgumentException error;
+			synchronized (this) {
+				try {
+					while (demand == 0 && !cancelled && invalid == null) {
+						wait();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					cancelled = true;
+				}
+				if (cancelled) {
+					walker.cancel();
+					return false;
+				}
+				error = invalid;
+				if (error == null) {
+					demand--;
+					return true;
+				}
+				cancelled = true;
+				walker.cancel();
+			}
+			subscriber.onError(error);
+			return false;
+		}
+
+		private synchronized boolean isCancelled() {
+			return cancelled;
+		}
+	}
+}
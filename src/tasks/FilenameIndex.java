@@ -0,0 +1,739 @@
+package tasks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * The {@code FilenameIndex} class is an in-memory trigram index over the file names
+ * below a single root directory. It answers the same case-insensitive substring
+ * query that {@link FileEditor} runs, but without touching the filesystem.
+ *
+ * Every file name, case-folded as by {@link NameMatcher}, is split into overlapping
+ * three-character grams, so grams and the final match agree in every locale. Each
+ * gram keeps a posting list of file ids, stored as delta-encoded varints once the
+ * index is built. A query intersects the posting lists of its own grams and then
+ * verifies the surviving candidates against the real name.
+ *
+ * Indexes are built once per root through {@link #forRoot(Path)} and shared; shared
+ * indexes are then kept current by an {@link IndexWatcher}. Each root is built under
+ * its own future, so building one index never holds up searches of other roots, and
+ * {@link #forRoot(Path, PruneRules, ScanProgress, Consumer, Consumer)} hands the files
+ * of the building walk to its caller as they are found. Walker threads add their files
+ * one directory at a time. The number of indexed files is capped by the
+ * {@code filesearcher.index.maxFiles} system property; a root exceeding it yields an
+ * incomplete index that callers must not rely on. Incomplete indexes are dropped from
+ * the shared ones and stop watching.
+ */
+public final class FilenameIndex {
+
+	private static final Logger LOGGER = Logger.getLogger(FilenameIndex.class.getName());
+
+	/** Upper bound on indexed files per root, keeping heap use predictable. */
+	private static final int MAX_FILES = Integer.getInteger("filesearcher.index.maxFiles", 5_000_000);
+
+	/** Shared indexes, built or being built, keyed by their absolute root path and rules. */
+	private static final Map<String, CompletableFuture<FilenameIndex>> INDEXES = new ConcurrentHashMap<>();
+
+	/** Keys of roots that held more files than an index may; they are walked instead. */
+	private static final Set<String> OVERSIZED = ConcurrentHashMap.newKeySet();
+
+	private final Path root;
+
+	/** Rules the index was built with; the watcher applies them to new entries too. */
+	private final PruneRules rules;
+
+	/** Directory paths, referenced by id from {@link #parents}. */
+	private final List<String> directories = new ArrayList<>();
+	private final Map<String, Integer> directoryIds = new HashMap<>();
+
+	/** Per-file parent directory id and original file name, indexed by file id. */
+	private int[] parents = new int[1024];
+	private String[] names = new String[1024];
+	private int size;
+
+	/** Files removed after the index was built. */
+	private final BitSet removed = new BitSet();
+
+	/**
+	 * Uncompressed posting lists. While building they hold every id; once frozen they
+	 * only hold ids added later, which are all greater than the ids in {@link #postings}.
+	 */
+	private Map<Long, IntList> building = new HashMap<>();
+	private Map<Long, byte[]> postings;
+
+	private boolean complete = true;
+
+	/** The key the index is shared under, and its watcher; {@code null} if it is not shared. */
+	private String key;
+	private IndexWatcher watcher;
+
+	/** Bumped by every change after the index was built, so answers can be cached against it. */
+	private long version;
+	private long memoryBytes;
+
+	private FilenameIndex(Path root, PruneRules rules) {
+		this.root = root;
+		this.rules = rules;
+	}
+
+	/**
+	 * Returns the shared index for {@code root}, building it with a full traversal on first use.
+	 *
+	 * @param root The directory to index.
+	 * @return The index for this root.
+	 * @throws IOException If the root cannot be read.
+	 */
+	public static FilenameIndex forRoot(Path root) throws IOException {
+		return forRoot(root, null);
+	}
+
+	/**
+	 * Returns the shared index for {@code root}, reporting the initial traversal to
+	 * {@code progress}. An index whose build was cancelled is returned incomplete and not shared.
+	 *
+	 * @param root     The directory to index.
+	 * @param progress Progress and cancellation state for the initial build, or {@code null}.
+	 * @return The index for this root.
+	 * @throws IOException If the root cannot be read.
+	 */
+	public static FilenameIndex forRoot(Path root, ScanProgress progress) throws IOException {
+		return forRoot(root, PruneRules.NONE, progress);
+	}
+
+	/**
+	 * Returns the shared index of what {@code rules} leave of {@code root}. Each set of
+	 * rules gets its own index, since an index built with one cannot answer for another.
+	 * If another caller is building the index, this waits for it.
+	 *
+	 * @param root     The directory to index.
+	 * @param rules    Subtrees and files left out of the index.
+	 * @param progress Progress and cancellation state for the initial build, or {@code null}.
+	 * @return The index for this root and rules.
+	 * @throws IOException If the root cannot be read.
+	 */
+	public static FilenameIndex forRoot(Path root, PruneRules rules, ScanProgress progress) throws IOException {
+		String key = key(root, rules);
+		if (OVERSIZED.contains(key)) {
+			FilenameIndex empty = new FilenameIndex(root, rules);
+			empty.complete = false;
+			return empty;
+		}
+		CompletableFuture<FilenameIndex> building = new CompletableFuture<>();
+		CompletableFuture<FilenameIndex> shared = INDEXES.putIfAbsent(key, building);
+		if (shared == null) {
+			return buildShared(key, root, rules, progress, building, null, null);
+		}
+		FilenameIndex index = shared.join();
+		// A failed build leaves nothing behind, so the next attempt reports its own failure.
+		return index != null ? index : forRoot(root, rules, progress);
+	}
+
+	/**
+	 * Returns the shared index of what {@code rules} leave of {@code root} if it is built
+	 * and complete. Otherwise walks the tree itself, passing every file and directory to
+	 * the given consumers as they are found, and returns {@code null}; if no other caller
+	 * is building the index, the walk builds it as well. Either way the caller never waits
+	 * for a build before it sees the first file.
+	 *
+	 * @param root        The directory to index.
+	 * @param rules       Subtrees and files left out of the index.
+	 * @param progress    Progress and cancellation state of the walk, or {@code null}.
+	 * @param files       Thread-safe consumer receiving a record for each file walked.
+	 * @param directories Thread-safe consumer receiving each directory walked, or {@code null}.
+	 * @return The complete index, or {@code null} if the tree was walked instead.
+	 * @throws IOException If the root cannot be read.
+	 */
+	public static FilenameIndex forRoot(Path root, PruneRules rules, ScanProgress progress,
+			Consumer<FileRecord> files, Consumer<Path> directories) throws IOException {
+		String key = key(root, rules);
+		CompletableFuture<FilenameIndex> shared = INDEXES.get(key);
+		FilenameIndex ready = shared == null ? null : shared.getNow(null);
+		if (ready != null && ready.isComplete()) {
+			return ready;
+		}
+		if (shared == null && !OVERSIZED.contains(key)) {
+			CompletableFuture<FilenameIndex> building = new CompletableFuture<>();
+			if (INDEXES.putIfAbsent(key, building) == null) {
+				buildShared(key, root, rules, progress, building, files, directories);
+				return null;
+			}
+		}
+		// Being built by another search, or too large to index.
+		TreeWalker.walkRecords(root, rules, files, directories, progress);
+		return null;
+	}
+
+	/**
+	 * Removes a deleted file from every shared index that contains it.
+	 *
+	 * @param file The file that no longer exists.
+	 */
+	public static void forget(Path file) {
+		forget(List.of(file));
+	}
+
+	/**
+	 * Removes deleted files from every built shared index that contains them, taking
+	 * each index's lock once for the whole batch. Indexes still being built learn of
+	 * the deletions from their watchers.
+	 *
+	 * @param files The files that no longer exist.
+	 */
+	public static void forget(Collection<Path> files) {
+		if (files.isEmpty()) {
+			return;
+		}
+		for (CompletableFuture<FilenameIndex> shared : INDEXES.values()) {
+			FilenameIndex index = shared.getNow(null);
+			if (index != null) {
+				index.removeAll(files);
+			}
+		}
+	}
+
+	/**
+	 * Walks {@code root} once and builds a frozen, unwatched index from every regular file found.
+	 *
+	 * @param root The directory to index.
+	 * @return The built index.
+	 * @throws IOException If the root cannot be read.
+	 */
+	public static FilenameIndex build(Path root) throws IOException {
+		return build(root, null, PruneRules.NONE, null, null, null);
+	}
+
+	private static String key(Path root, PruneRules rules) {
+		return root.toAbsolutePath() + (rules.isEmpty() ? "" : "\0" + rules);
+	}
+
+	/**
+	 * Builds the index shared under {@code key}, whose {@code future} the caller has
+	 * registered, and completes the future with it, or with {@code null} if the root
+	 * cannot be read. Only a complete index stays shared.
+	 */
+	private static FilenameIndex buildShared(String key, Path root, PruneRules rules, ScanProgress progress,
+			CompletableFuture<FilenameIndex> future, Consumer<FileRecord> files, Consumer<Path> directories)
+			throws IOException {
+		FilenameIndex index = null;
+		try {
+			index = build(root, key, rules, progress, files, directories);
+			return index;
+		} finally {
+			if (index == null || !index.isComplete()) {
+				INDEXES.remove(key, future);
+			}
+			future.complete(index);
+		}
+	}
+
+	/**
+	 * Builds an index, passing every walked file and directory on to the given consumers.
+	 * A shared index, one with a {@code key}, registers every walked directory with an
+	 * {@link IndexWatcher} that starts applying changes once the index is frozen.
+	 */
+	private static FilenameIndex build(Path root, String key, PruneRules rules, ScanProgress progress,
+			Consumer<FileRecord> files, Consumer<Path> directories) throws IOException {
+		long start = System.currentTimeMillis();
+		FilenameIndex index = new FilenameIndex(root, rules);
+		index.key = key;
+		IndexWatcher watcher = key != null ? new IndexWatcher(index) : null;
+		index.watcher = watcher;
+		Loader loader = index.new Loader();
+		Consumer<Path> register = watcher == null ? directories
+				: directories == null ? watcher::register : directory -> {
+					watcher.register(directory);
+					directories.accept(directory);
+				};
+		try {
+			TreeWalker.walkRecords(root, rules, files == null ? loader : loader.andThen(files), register, progress);
+		} catch (IOException e) {
+			if (watcher != null) {
+				watcher.close();
+			}
+			throw e;
+		}
+		loader.flush();
+		index.freeze();
+		if (progress != null && progress.isCancelled()) {
+			index.markIncomplete();
+		} else if (watcher != null && index.isComplete()) {
+			watcher.start();
+		} else if (!index.isComplete()) {
+			if (key != null && index.size >= MAX_FILES) {
+				OVERSIZED.add(key);
+			}
+			index.release();
+		}
+		LOGGER.info(() -> String.format("Indexed %d files under %s in %d ms, %s.", index.size, root,
+				System.currentTimeMillis() - start, index.memoryReport()));
+		return index;
+	}
+
+	/**
+	 * Returns the indexed files whose names contain {@code keyword}, ignoring case.
+	 *
+	 * @param keyword The substring to look for.
+	 * @return The matching files.
+	 */
+	public synchronized List<Path> search(String keyword) {
+		NameMatcher matcher = NameMatcher.substring(keyword);
+		List<Path> result = new ArrayList<>();
+		for (int id : candidates(NameMatcher.fold(keyword))) {
+			if (!removed.get(id) && matcher.matches(names[id])) {
+				result.add(Paths.get(directories.get(parents[id]), names[id]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Marks {@code file} as deleted so it is no longer returned by {@link #search(String)}.
+	 *
+	 * @param file The file to remove.
+	 */
+	public synchronized void remove(Path file) {
+		Path parent = file.getParent();
+		Integer dir = parent == null ? null : directoryIds.get(parent.toString());
+		if (dir == null) {
+			return;
+		}
+		forEachId(dir, file.getFileName().toString(), id -> {
+			removed.set(id);
+			version++;
+		});
+	}
+
+	/**
+	 * Marks every file of {@code files} below the root as deleted, under a single lock.
+	 *
+	 * @param files The files to remove.
+	 */
+	public synchronized void removeAll(Collection<Path> files) {
+		for (Path file : files) {
+			if (file.startsWith(root)) {
+				remove(file);
+			}
+		}
+	}
+
+	/**
+	 * Adds a file created after the index was built. Files already indexed are ignored.
+	 *
+	 * @param file The new file.
+	 */
+	public synchronized void insert(Path file) {
+		Path parent = file.getParent();
+		Integer dir = parent == null ? null : directoryIds.get(parent.toString());
+		if (dir != null) {
+			boolean[] indexed = { false };
+			forEachId(dir, file.getFileName().toString(), id -> indexed[0] = true);
+			if (indexed[0]) {
+				return;
+			}
+		}
+		int before = size;
+		add(file.getParent().toString(), List.of(file.getFileName().toString()));
+		if (size > before) {
+			version++;
+			memoryBytes += 52 + names[before].length() + 8L * names[before].length();
+		}
+	}
+
+	/**
+	 * Marks every file below {@code directory} as deleted, e.g. before rescanning it.
+	 *
+	 * @param directory The root of the removed subtree.
+	 */
+	public synchronized void removeSubtree(Path directory) {
+		String prefix = directory.toString();
+		String nested = prefix.endsWith(directory.getFileSystem().getSeparator()) ? prefix
+				: prefix + directory.getFileSystem().getSeparator();
+		BitSet affected = new BitSet();
+		for (int dir = 0; dir < directories.size(); dir++) {
+			String path = directories.get(dir);
+			if (path.equals(prefix) || path.startsWith(nested)) {
+				affected.set(dir);
+			}
+		}
+		if (affected.isEmpty()) {
+			return;
+		}
+		for (int id = 0; id < size; id++) {
+			if (affected.get(parents[id])) {
+				removed.set(id);
+			}
+		}
+		version++;
+	}
+
+	/**
+	 * Flags the index as no longer trustworthy, so callers fall back to walking the tree.
+	 * A shared index is dropped and stops watching.
+	 */
+	public void markIncomplete() {
+		synchronized (this) {
+			complete = false;
+			version++;
+		}
+		release();
+	}
+
+	/**
+	 * Drops this index from the shared ones, unless it is still being built, and closes its watcher.
+	 */
+	private void release() {
+		if (key != null) {
+			INDEXES.computeIfPresent(key, (k, shared) -> shared.getNow(null) == this ? null : shared);
+		}
+		if (watcher != null) {
+			watcher.close();
+		}
+	}
+
+	/**
+	 * @return {@code false} if the root held more files than the index may hold,
+	 *         or the index could not be kept current.
+	 */
+	public synchronized boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return A counter that changes whenever a file is inserted or removed after the build.
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The number of indexed files.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The root directory of this index.
+	 */
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return The rules the index was built with.
+	 */
+	public PruneRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * @return The estimated heap footprint of the index in bytes.
+	 */
+	public long memoryBytes() {
+		return memoryBytes;
+	}
+
+	/**
+	 * @return A human-readable summary of total memory use and memory per million files.
+	 */
+	public String memoryReport() {
+		long perMillion = size == 0 ? 0 : memoryBytes * 1_000_000L / size;
+		return String.format("%.1f MB total, %.1f MB per million files%s", memoryBytes / 1048576.0,
+				perMillion / 1048576.0, complete ? "" : " (truncated at " + MAX_FILES + " files)");
+	}
+
+	/**
+	 * Appends files of one directory. Called concurrently by the {@link Loader} while
+	 * building, and by {@link #insert(Path)} afterwards. The grams are computed before
+	 * the lock is taken.
+	 */
+	private void add(String parent, List<String> files) {
+		List<Set<Long>> grams = new ArrayList<>(files.size());
+		for (String name : files) {
+			grams.add(grams(NameMatcher.fold(name)));
+		}
+		synchronized (this) {
+			Integer dir = directoryIds.get(parent);
+			if (dir == null) {
+				dir = directories.size();
+				directories.add(parent);
+				directoryIds.put(parent, dir);
+			}
+			for (int i = 0; i < files.size(); i++) {
+				if (size >= MAX_FILES) {
+					complete = false;
+					return;
+				}
+				if (size == names.length) {
+					names = Arrays.copyOf(names, size * 2);
+					parents = Arrays.copyOf(parents, size * 2);
+				}
+				int id = size++;
+				names[id] = files.get(i);
+				parents[id] = dir;
+				for (long gram : grams.get(i)) {
+					building.computeIfAbsent(gram, g -> new IntList()).add(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes the live ids of the files named {@code name} in directory {@code dir} to
+	 * {@code action}. Only the shortest posting list of the name's grams is decoded.
+	 */
+	private void forEachId(int dir, String name, IntConsumer action) {
+		String folded = NameMatcher.fold(name);
+		int[] ids;
+		if (folded.length() < 3) {
+			ids = candidates(folded);
+		} else {
+			long shortest = 0;
+			int length = Integer.MAX_VALUE;
+			for (long gram : grams(folded)) {
+				int gramLength = postingLength(gram);
+				if (gramLength < length) {
+					shortest = gram;
+					length = gramLength;
+				}
+			}
+			ids = length == 0 ? new int[0] : posting(shortest);
+		}
+		for (int id : ids) {
+			if (parents[id] == dir && names[id].equals(name) && !removed.get(id)) {
+				action.accept(id);
+			}
+		}
+	}
+
+	/**
+	 * Compresses the posting lists, trims the arrays and computes the memory estimate.
+	 */
+	private synchronized void freeze() {
+		names = Arrays.copyOf(names, size);
+		parents = Arrays.copyOf(parents, size);
+		postings = new HashMap<>(building.size() * 2);
+
+		long bytes = (long) size * (Integer.BYTES + 8);
+		for (Map.Entry<Long, IntList> entry : building.entrySet()) {
+			byte[] list = entry.getValue().encode();
+			postings.put(entry.getKey(), list);
+			bytes += list.length + 16 + 64;
+		}
+		for (int id = 0; id < size; id++) {
+			bytes += 40 + names[id].length();
+		}
+		for (String dir : directories) {
+			bytes += 48 + 64 + dir.length();
+		}
+		building = new HashMap<>();
+		memoryBytes = bytes;
+	}
+
+	/**
+	 * Returns the ids of all files that contain every gram of {@code folded}, a keyword
+	 * folded by {@link NameMatcher#fold(String)}. Keywords shorter than one gram cannot
+	 * be narrowed and yield every file id.
+	 */
+	private int[] candidates(String folded) {
+		if (folded.length() < 3) {
+			int[] all = new int[size];
+			Arrays.setAll(all, id -> id);
+			return all;
+		}
+
+		List<Long> lists = new ArrayList<>();
+		for (long gram : grams(folded)) {
+			if (!postings.containsKey(gram) && !building.containsKey(gram)) {
+				return new int[0];
+			}
+			lists.add(gram);
+		}
+		lists.sort(Comparator.comparingInt(this::postingLength));
+
+		int[] candidates = posting(lists.get(0));
+		int count = candidates.length;
+		for (int i = 1; i < lists.size() && count > 0; i++) {
+			count = intersect(candidates, count, posting(lists.get(i)));
+		}
+		return Arrays.copyOf(candidates, count);
+	}
+
+	/**
+	 * Returns the full sorted posting list of {@code gram}: the compressed ids followed
+	 * by any ids added after the index was frozen.
+	 */
+	private int[] posting(long gram) {
+		byte[] frozen = postings.get(gram);
+		int[] ids = frozen == null ? new int[0] : decode(frozen);
+		IntList added = building.get(gram);
+		if (added == null) {
+			return ids;
+		}
+		int[] merged = Arrays.copyOf(ids, ids.length + added.size);
+		System.arraycopy(added.values, 0, merged, ids.length, added.size);
+		return merged;
+	}
+
+	private int postingLength(long gram) {
+		byte[] frozen = postings.get(gram);
+		IntList added = building.get(gram);
+		return (frozen == null ? 0 : frozen.length) + (added == null ? 0 : added.size);
+	}
+
+	/**
+	 * Packs every distinct three-character window of {@code text} into a long.
+	 */
+	private static Set<Long> grams(String text) {
+		Set<Long> grams = new HashSet<>();
+		for (int i = 0; i + 3 <= text.length(); i++) {
+			grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+		}
+		return grams;
+	}
+
+	/**
+	 * Keeps the values of {@code a[0..count)} that also occur in {@code b}; both are sorted.
+	 *
+	 * @return The new number of values in {@code a}.
+	 */
+	private static int intersect(int[] a, int count, int[] b) {
+		int kept = 0;
+		for (int i = 0, j = 0; i < count && j < b.length;) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				a[kept++] = a[i++];
+				j++;
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * Decodes a delta-encoded varint posting list whose first varint is its length.
+	 */
+	private static int[] decode(byte[] list) {
+		int[] pos = { 0 };
+		int[] ids = new int[readVarint(list, pos)];
+		int previous = 0;
+		for (int i = 0; i < ids.length; i++) {
+			previous += readVarint(list, pos);
+			ids[i] = previous;
+		}
+		return ids;
+	}
+
+	private static int readVarint(byte[] list, int[] pos) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = list[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	/**
+	 * Adds the files of a walk to the index a directory at a time: each walker thread
+	 * collects the files it reports until it moves on to another directory, so the index
+	 * lock is taken once per directory instead of once per file.
+	 */
+	private final class Loader implements Consumer<FileRecord> {
+
+		/** Most files collected before they are added, bounding what a thread holds back. */
+		private static final int BATCH = 256;
+
+		private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+		private final ThreadLocal<Batch> local = ThreadLocal.withInitial(() -> {
+			Batch batch = new Batch();
+			batches.add(batch);
+			return batch;
+		});
+
+		@Override
+		public void accept(FileRecord record) {
+			Path file = record.getPath();
+			String parent = file.getParent().toString();
+			Batch batch = local.get();
+			if (!parent.equals(batch.parent) || batch.names.size() == BATCH) {
+				batch.flush();
+				batch.parent = parent;
+			}
+			batch.names.add(file.getFileName().toString());
+		}
+
+		/**
+		 * Adds what every thread still holds; called once the walk has finished.
+		 */
+		void flush() {
+			for (Batch batch : batches) {
+				batch.flush();
+			}
+		}
+
+		/**
+		 * The files of one directory collected by one thread.
+		 */
+		private final class Batch {
+
+			private String parent;
+			private final List<String> names = new ArrayList<>();
+
+			void flush() {
+				if (!names.isEmpty()) {
+					add(parent, names);
+					names.clear();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Growable list of ascending file ids used while the index is built.
+	 */
+	private static final class IntList {
+
+		private int[] values = new int[4];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		byte[] encode() {
+			byte[] out = new byte[5 * (size + 1)];
+			int pos = writeVarint(out, 0, size);
+			int previous = 0;
+			for (int i = 0; i < size; i++) {
+				pos = writeVarint(out, pos, values[i] - previous);
+				previous = values[i];
+			}
+			return Arrays.copyOf(out, pos);
+		}
+
+		private static int writeVarint(byte[] out, int pos, int value) {
+			while ((value & ~0x7F) != 0) {
+				out[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out[pos++] = (byte) value;
+			return pos;
+		}
+	}
+}
@@ -2,13 +2,9 @@ package tasks;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.*;
 import java.util.stream.Collectors;
 import interfaces.Search;
 
@@ -21,7 +17,7 @@ public class Finder implements Search {
 	private static final Logger LOGGER = Logger.getLogger(Finder.class.getName());
 
 	private final File path;
-	private final List<File> foundFilesList;
+	private List<File> foundFilesList;
 
 	/**
 	 * Constructs a {@code Finder} instance using a collection of files.
@@ -34,23 +30,16 @@ public class Finder implements Search {
 	}
 
 	/**
-	 * Constructs a {@code Finder} instance using a directory path.
+	 * Constructs a {@code Finder} instance using a directory path. The directory is only
+	 * walked on the first call to {@link #getFoundFilesList()} or {@link #getFoundFilesArray()};
+	 * the files are then held in a compact {@link ResultStore}, and {@link File} objects
+	 * are created on access. To process the files as they are found instead, use
+	 * {@link FileSearch}.
 	 *
 	 * @param finderPath The directory path to initialize the search space.
 	 */
 	public Finder(String finderPath) {
 		this.path = new File(finderPath);
-		List<File> result;
-		try {
-			result = Files.walk(Paths.get(finderPath))
-				.filter(Files::isRegularFile)
-				.map(Path::toFile)
-				.collect(Collectors.toList());
-		} catch (IOException e) {
-			LOGGER.log(Level.SEVERE, "Failed to read files from path: " + finderPath, e);
-			result = Collections.emptyList();
-		}
-		this.foundFilesList = result;
 	}
 
 	/**
@@ -59,30 +48,39 @@ public class Finder implements Search {
 	 * @return An array of {@link File} objects.
 	 */
 	public File[] getFoundFilesArray() {
-		return foundFilesList.toArray(new File[0]);
+		return getFoundFilesList().toArray(new File[0]);
 	}
 
 	/**
 	 * Retrieves the list of files found in the search space.
 	 *
-	 * @return A {@link List} of {@link File} objects.
+	 * @return A {@link List} of {@link File} objects; read-only when built from a directory path.
 	 */
-	public List<File> getFoundFilesList() {
+	public synchronized List<File> getFoundFilesList() {
+		if (foundFilesList == null) {
+			ResultStore results = new ResultStore();
+			try {
+				TreeWalker.walkRecords(path.toPath(), results::add, null, null);
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, "Failed to read files from path: " + path, e);
+			}
+			foundFilesList = results.asFileList();
+		}
 		return foundFilesList;
 	}
 
 	/**
 	 * Searches for a single file by name in the provided list of files.
-	 * The search is case-insensitive and uses regular expressions.
+	 * The search is case-insensitive and uses regular expressions, compiled once through {@link NameMatcher}.
 	 *
 	 * @param files      A list of {@link File} objects to search in.
 	 * @param searchName The name or pattern of the file to search for.
 	 * @return A {@link List} containing the matching file(s) or an empty list if none found.
 	 */
 	public List<File> getSingleFile(List<File> files, String searchName) {
-		Pattern pattern = Pattern.compile(searchName, Pattern.CASE_INSENSITIVE);
+		NameMatcher matcher = NameMatcher.regex(searchName);
 		return files.stream()
-			.filter(file -> pattern.matcher(file.toString()).find())
+			.filter(file -> matcher.matches(file.toString()))
 			.collect(Collectors.toList());
 	}
 
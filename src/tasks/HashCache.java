@@ -0,0 +1,188 @@
+package tasks;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@code HashCache} class remembers the partial and full content hashes computed
+ * by {@link DuplicateFinder}, keyed by path and valid only while the file's size and
+ * modification time are unchanged. It is saved to a file between runs, so a rerun only
+ * rehashes files that changed.
+ *
+ * The default cache file is {@code FileSearcher.hashes} in the working directory, next
+ * to the log, and can be moved with the {@code filesearcher.hash.cache} system property.
+ * Entries of files that no longer exist are dropped whenever the cache is saved.
+ */
+public final class HashCache {
+
+	private static final Logger LOGGER = Logger.getLogger(HashCache.class.getName());
+
+	private static final int VERSION = 1;
+
+	private static HashCache shared;
+
+	private final Path file;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean modified;
+
+	/**
+	 * Hashes of one file at the size and modification time they were computed for.
+	 */
+	private static final class Entry {
+
+		private final long size;
+		private final long lastModified;
+		private volatile String partial;
+		private volatile String full;
+
+		Entry(long size, long lastModified) {
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+
+	private HashCache(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the cache stored at the default location, loading it on first use.
+	 *
+	 * @return The shared cache.
+	 */
+	public static synchronized HashCache shared() {
+		if (shared == null) {
+			shared = load(Paths.get(System.getProperty("filesearcher.hash.cache", "FileSearcher.hashes")));
+		}
+		return shared;
+	}
+
+	/**
+	 * Loads a cache from {@code file}; a missing or unreadable file yields an empty cache.
+	 *
+	 * @param file The cache file, or {@code null} for a cache kept in memory only.
+	 * @return The cache.
+	 */
+	public static HashCache load(Path file) {
+		HashCache cache = new HashCache(file);
+		if (file == null || !Files.isRegularFile(file)) {
+			return cache;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != VERSION) {
+				return cache;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				Entry entry = new Entry(in.readLong(), in.readLong());
+				entry.partial = readHash(in);
+				entry.full = readHash(in);
+				cache.entries.put(path, entry);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Ignoring unreadable hash cache: " + file, e);
+			cache.entries.clear();
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns a cached hash if it was computed for the record's current size and modification time.
+	 *
+	 * @param record The file.
+	 * @param full   {@code true} for the full hash, {@code false} for the partial one.
+	 * @return The hash, or {@code null} if unknown or stale.
+	 */
+	public String get(FileRecord record, boolean full) {
+		Entry entry = entries.get(key(record));
+		if (entry == null || entry.size != record.getSize() || entry.lastModified != record.getLastModified()) {
+			return null;
+		}
+		return full ? entry.full : entry.partial;
+	}
+
+	/**
+	 * Stores a hash computed for the record's size and modification time.
+	 *
+	 * @param record The file.
+	 * @param full   {@code true} for the full hash, {@code false} for the partial one.
+	 * @param hash   The hash.
+	 */
+	public void put(FileRecord record, boolean full, String hash) {
+		Entry entry = entries.compute(key(record), (path, old) -> old != null
+				&& old.size == record.getSize() && old.lastModified == record.getLastModified() ? old
+						: new Entry(record.getSize(), record.getLastModified()));
+		if (full) {
+			entry.full = hash;
+		} else {
+			entry.partial = hash;
+		}
+		modified = true;
+	}
+
+	/**
+	 * @return Number of files with a cached hash.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Drops the entries of deleted files, then writes the cache back to its file if
+	 * anything changed, replacing the file atomically.
+	 */
+	public synchronized void save() {
+		if (file == null) {
+			return;
+		}
+		if (entries.keySet().removeIf(path -> !Files.exists(Paths.get(path)))) {
+			modified = true;
+		}
+		if (!modified) {
+			return;
+		}
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+			List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+			out.writeInt(VERSION);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<String, Entry> cached : snapshot) {
+				Entry entry = cached.getValue();
+				out.writeUTF(cached.getKey());
+				out.writeLong(entry.size);
+				out.writeLong(entry.lastModified);
+				writeHash(out, entry.partial);
+				writeHash(out, entry.full);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to save hash cache: " + file, e);
+			return;
+		}
+		try {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			modified = false;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to replace hash cache: " + file, e);
+		}
+	}
+
+	private static String key(FileRecord record) {
+		return record.getPath().toAbsolutePath().toString();
+	}
+
+	private static String readHash(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeHash(DataOutputStream out, String hash) throws IOException {
+		out.writeBoolean(hash != null);
+		if (hash != null) {
+			out.writeUTF(hash);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package tasks;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import factory.DaemonFactory;
+
+/**
+ * The {@code IndexWatcher} class keeps a {@link FilenameIndex} current after its
+ * initial scan. Every directory walked while building the index is registered with a
+ * {@link WatchService}, and a daemon thread applies the reported changes:
+ * created files are inserted, created directories are walked and registered, and
+ * deleted entries are removed together with any subtree below them.
+ *
+ * When events are lost ({@code OVERFLOW}) only the directory they were reported for
+ * is rescanned. If a directory cannot be registered, e.g. because the platform's
+ * watch limit is reached, the index is marked incomplete and searches fall back to walking.
+ */
+public class IndexWatcher implements Runnable {
+
+	private static final Logger LOGGER = Logger.getLogger(IndexWatcher.class.getName());
+
+	private static final DaemonFactory FACTORY = new DaemonFactory("Index Watcher");
+
+	private final FilenameIndex index;
+	private final WatchService watchService;
+
+	/** Registered directories by key, and the reverse lookup used to recognise deleted directories. */
+	private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+	private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+
+	/** Set once the watch service is closed, e.g. because the index became incomplete. */
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a watcher for {@code index}. Directories are added with {@link #register(Path)}.
+	 *
+	 * @param index The index to keep current.
+	 */
+	public IndexWatcher(FilenameIndex index) {
+		this.index = index;
+		WatchService service = null;
+		try {
+			service = index.getRoot().getFileSystem().newWatchService();
+		} catch (IOException | UnsupportedOperationException e) {
+			LOGGER.log(Level.WARNING, "File watching unavailable for: " + index.getRoot(), e);
+		}
+		this.watchService = service;
+	}
+
+	/**
+	 * Registers {@code directory} for create and delete events. Safe to call from several threads.
+	 *
+	 * @param directory The directory to watch.
+	 */
+	public void register(Path directory) {
+		if (watchService == null || closed) {
+			return;
+		}
+		try {
+			WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+			keys.put(key, directory);
+			directories.put(directory, key);
+		} catch (ClosedWatchServiceException e) {
+			// Closed by another thread since the check above.
+		} catch (IOException e) {
+			if (index.isComplete()) {
+				LOGGER.log(Level.WARNING, "Failed to watch " + directory + "; index will not be used.", e);
+			}
+			index.markIncomplete();
+		}
+	}
+
+	/**
+	 * Starts applying events on a daemon thread, or marks the index incomplete if
+	 * watching is unavailable.
+	 */
+	public void start() {
+		if (watchService == null) {
+			index.markIncomplete();
+			return;
+		}
+		FACTORY.newThread(this).start();
+	}
+
+	/**
+	 * Releases the watch service and its registrations, e.g. when the index build was
+	 * cancelled or the index became incomplete. Stops the watching thread if it runs.
+	 */
+	public void close() {
+		if (watchService == null || closed) {
+			return;
+		}
+		closed = true;
+		keys.clear();
+		directories.clear();
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Failed to close watch service for: " + index.getRoot(), e);
+		}
+	}
+
+	/**
+	 * Applies queued watch events to the index until interrupted.
+	 */
+	@Override
+	public void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+
+			Path directory = keys.get(key);
+			if (directory == null) {
+				key.cancel();
+				continue;
+			}
+			for (WatchEvent<?> event : key.pollEvents()) {
+				try {
+					if (event.kind() == OVERFLOW) {
+						rescan(directory);
+					} else if (event.kind() == ENTRY_CREATE) {
+						created(directory.resolve((Path) event.context()));
+					} else if (event.kind() == ENTRY_DELETE) {
+						deleted(directory.resolve((Path) event.context()));
+					}
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, "Failed to apply " + event.kind() + " in " + directory, e);
+				}
+			}
+			if (!key.reset()) {
+				keys.remove(key);
+				directories.remove(directory, key);
+			}
+		}
+	}
+
+	private void created(Path entry) throws IOException {
+		if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+			walk(entry);
+		} else if (Files.isRegularFile(entry) && !index.getRules().excludes(index.getRoot(), entry)) {
+			index.insert(entry);
+		}
+	}
+
+	private void deleted(Path entry) {
+		index.remove(entry);
+		if (directories.containsKey(entry)) {
+			index.removeSubtree(entry);
+		}
+	}
+
+	private void rescan(Path directory) throws IOException {
+		LOGGER.fine(() -> "Watch events lost, rescanning: " + directory);
+		index.removeSubtree(directory);
+		walk(directory);
+	}
+
+	/**
+	 * Indexes a subtree, leaving out what the index's rules prune relative to its root.
+	 */
+	private void walk(Path directory) throws IOException {
+		TreeWalker.walkSubtree(index.getRoot(), directory, index.getRules(), record -> index.insert(record.getPath()),
+				this::register);
+	}
+}
@@ -0,0 +1,432 @@
+package tasks;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code NameMatcher} class compiles a search query once into the cheapest
+ * strategy able to answer it, so per-file matching does no parsing and, for plain
+ * keywords, no allocation at all.
+ *
+ * <ul>
+ * <li>{@link #substring(String)}: case-folded substring search over the characters in place.</li>
+ * <li>{@link #glob(String)}: a glob translated to a regular expression.</li>
+ * <li>{@link #regex(String)}: a regular expression, guarded by the longest literal the
+ * expression requires so most non-matching names are rejected without running the regex.</li>
+ * </ul>
+ *
+ * All matchers are case-insensitive and thread-safe.
+ */
+public abstract class NameMatcher {
+
+	/** Characters with special meaning in a regular expression. */
+	private static final String REGEX_META = "\\^$.|?*+()[]{}";
+
+	/**
+	 * Tests whether {@code text} matches the compiled query.
+	 *
+	 * @param text The file name or path to test.
+	 * @return {@code true} on a match.
+	 */
+	public abstract boolean matches(CharSequence text);
+
+	/**
+	 * Compiles a case-insensitive substring query.
+	 *
+	 * @param keyword The text that must occur in a name.
+	 * @return The compiled matcher.
+	 */
+	public static NameMatcher substring(String keyword) {
+		return new Substring(keyword);
+	}
+
+	/**
+	 * Compiles a case-insensitive glob supporting {@code *}, {@code ?} and {@code [...]}.
+	 * The glob must match the whole text.
+	 *
+	 * @param glob The glob pattern.
+	 * @return The compiled matcher.
+	 */
+	public static NameMatcher glob(String glob) {
+		StringBuilder regex = new StringBuilder("^");
+		StringBuilder literal = new StringBuilder();
+		String longest = "";
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			int end = c == '[' ? globClassEnd(glob, i) : -1;
+			if (c == '*' || c == '?' || end >= 0) {
+				longest = longer(longest, literal);
+				literal.setLength(0);
+				if (end >= 0) {
+					appendGlobClass(regex, glob, i, end);
+					i = end;
+				} else {
+					regex.append(c == '*' ? ".*" : ".");
+				}
+			} else {
+				literal.append(c);
+				regex.append(REGEX_META.indexOf(c) >= 0 ? "\\" + c : String.valueOf(c));
+			}
+		}
+		longest = longer(longest, literal);
+		regex.append('$');
+		return new Regex(Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL), longest);
+	}
+
+	/**
+	 * Returns the index of the {@code ]} closing the glob class opened at {@code open}, or
+	 * -1 if the class is not closed and the {@code [} is literal. A {@code ]} right after
+	 * the opening bracket or its negation is a member, as in the shell.
+	 */
+	private static int globClassEnd(String glob, int open) {
+		int i = open + 1;
+		if (i < glob.length() && (glob.charAt(i) == '!' || glob.charAt(i) == '^')) {
+			i++;
+		}
+		if (i < glob.length() && glob.charAt(i) == ']') {
+			i++;
+		}
+		return glob.indexOf(']', i);
+	}
+
+	/**
+	 * Appends the glob class between {@code open} and {@code end} as a regex. Only
+	 * negation and ranges keep a meaning; characters the regex class syntax gives another
+	 * meaning, such as {@code &&}, {@code \d} or a nested {@code [}, are escaped. A
+	 * reversed range matches nothing, as in the shell.
+	 */
+	private static void appendGlobClass(StringBuilder regex, String glob, int open, int end) {
+		int i = open + 1;
+		boolean negated = glob.charAt(i) == '!' || glob.charAt(i) == '^';
+		if (negated) {
+			i++;
+		}
+		StringBuilder members = new StringBuilder();
+		for (; i < end; i++) {
+			char low = glob.charAt(i);
+			char high = low;
+			if (i + 2 < end && glob.charAt(i + 1) == '-') {
+				high = glob.charAt(i + 2);
+				i += 2;
+			}
+			if (low <= high) {
+				appendClassMember(members, low);
+				if (high != low) {
+					members.append('-');
+					appendClassMember(members, high);
+				}
+			}
+		}
+		if (members.length() == 0) {
+			regex.append(negated ? "." : "(?!)");
+		} else {
+			regex.append(negated ? "[^" : "[").append(members).append(']');
+		}
+	}
+
+	private static void appendClassMember(StringBuilder members, char c) {
+		if ("\\&[]^-".indexOf(c) >= 0) {
+			members.append('\\');
+		}
+		members.append(c);
+	}
+
+	/**
+	 * Compiles a case-insensitive regular expression found anywhere in the text.
+	 * Expressions without metacharacters are answered by a substring matcher.
+	 *
+	 * @param regex The regular expression.
+	 * @return The compiled matcher.
+	 */
+	public static NameMatcher regex(String regex) {
+		if (regex.chars().noneMatch(c -> REGEX_META.indexOf(c) >= 0)) {
+			return new Substring(regex);
+		}
+		return new Regex(Pattern.compile(regex, Pattern.CASE_INSENSITIVE), requiredLiteral(regex));
+	}
+
+	/**
+	 * Combines several matchers into one that accepts a text if any of them does.
+	 *
+	 * @param matchers The alternatives, tried in order.
+	 * @return The combined matcher, or the only alternative if there is just one.
+	 */
+	public static NameMatcher anyOf(List<NameMatcher> matchers) {
+		if (matchers.size() == 1) {
+			return matchers.get(0);
+		}
+		NameMatcher[] alternatives = matchers.toArray(new NameMatcher[0]);
+		return new NameMatcher() {
+			@Override
+			public boolean matches(CharSequence text) {
+				for (NameMatcher alternative : alternatives) {
+					if (alternative.matches(text)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Folds {@code keyword} the way {@link #substring(String)} does, so two keywords can
+	 * be compared: if one folded keyword contains another, every name matching the first
+	 * also matches the second.
+	 *
+	 * @param keyword The keyword to fold.
+	 * @return The folded keyword.
+	 */
+	static String fold(String keyword) {
+		return new String(foldAll(keyword));
+	}
+
+	/**
+	 * Returns the longest run of literal characters that every match of {@code regex}
+	 * must contain, or an empty string if none can be proven, e.g. because of alternation,
+	 * inline flags, named groups or backreferences.
+	 */
+	static String requiredLiteral(String regex) {
+		if (regex.indexOf('|') >= 0 || hasGroupConstruct(regex)) {
+			return "";
+		}
+		String longest = "";
+		StringBuilder run = new StringBuilder();
+		int depth = 0;
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			char literal;
+			if (c == '\\' && i + 1 < regex.length()) {
+				char next = regex.charAt(++i);
+				if (next == 'Q') {
+					// Quoted text is literal up to \E.
+					int end = regex.indexOf("\\E", i + 1);
+					String quoted = regex.substring(i + 1, end < 0 ? regex.length() : end);
+					if (depth == 0) {
+						run.append(quoted);
+					}
+					i = end < 0 ? regex.length() : end + 1;
+					continue;
+				}
+				if (Character.isLetterOrDigit(next)) {
+					// Classes, anchors and escapes with arguments: none of the text is a literal.
+					longest = longer(longest, run);
+					run.setLength(0);
+					i = skipEscape(regex, i);
+					if (i < 0) {
+						return "";
+					}
+					continue;
+				}
+				literal = next;
+			} else if (c == '[') {
+				longest = longer(longest, run);
+				run.setLength(0);
+				i = classEnd(regex, i);
+				if (i < 0) {
+					return longest;
+				}
+				continue;
+			} else if (REGEX_META.indexOf(c) >= 0) {
+				if (c == '?' || c == '*' || c == '{') {
+					// The previous character is optional, so it cannot be required.
+					if (run.length() > 0) {
+						run.setLength(run.length() - 1);
+					}
+				}
+				depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+				longest = longer(longest, run);
+				run.setLength(0);
+				if (c == '{') {
+					i = Math.max(i, regex.indexOf('}', i));
+				}
+				continue;
+			} else {
+				literal = c;
+			}
+			if (depth == 0) {
+				run.append(literal);
+			}
+		}
+		return longer(longest, run);
+	}
+
+	/**
+	 * Tests whether {@code regex} has a {@code (?} construct other than a non-capturing
+	 * group or a lookaround, i.e. inline flags or a named group.
+	 */
+	private static boolean hasGroupConstruct(String regex) {
+		for (int i = regex.indexOf("(?"); i >= 0; i = regex.indexOf("(?", i + 1)) {
+			if (i > 0 && regex.charAt(i - 1) == '\\') {
+				continue;
+			}
+			char kind = i + 2 < regex.length() ? regex.charAt(i + 2) : ')';
+			char after = i + 3 < regex.length() ? regex.charAt(i + 3) : ')';
+			boolean plain = kind == ':' || kind == '=' || kind == '!' || kind == '>'
+					|| kind == '<' && (after == '=' || after == '!');
+			if (!plain) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Skips the arguments of the escape whose letter or digit is at {@code i}.
+	 *
+	 * @return The index of the escape's last character, or -1 if the escape may refer
+	 *         to text elsewhere in the expression, as a backreference does.
+	 */
+	private static int skipEscape(String regex, int i) {
+		char letter = regex.charAt(i);
+		switch (letter) {
+		case 'x':
+			return i + 1 < regex.length() && regex.charAt(i + 1) == '{' ? closing(regex, i + 1, '}') : i + 2;
+		case 'u':
+			return i + 4;
+		case '0':
+			int digits = 0;
+			int limit = i + 1 < regex.length() && regex.charAt(i + 1) <= '3' ? 3 : 2;
+			while (digits < limit && i + 1 < regex.length() && regex.charAt(i + 1) >= '0' && regex.charAt(i + 1) <= '7') {
+				i++;
+				digits++;
+			}
+			return i;
+		case 'c':
+			return i + 1;
+		case 'p':
+		case 'P':
+		case 'N':
+			return i + 1 < regex.length() && regex.charAt(i + 1) == '{' ? closing(regex, i + 1, '}') : i + 1;
+		case 'k':
+			return -1;
+		default:
+			return Character.isDigit(letter) ? -1 : i;
+		}
+	}
+
+	private static int closing(String regex, int from, char close) {
+		int end = regex.indexOf(close, from);
+		return end < 0 ? regex.length() : end;
+	}
+
+	/**
+	 * Returns the index of the {@code ]} closing the character class opened at
+	 * {@code open}, skipping escaped characters, nested classes and a leading {@code ]},
+	 * or -1 if the class is not closed.
+	 */
+	private static int classEnd(String regex, int open) {
+		int i = open + 1;
+		if (i < regex.length() && regex.charAt(i) == '^') {
+			i++;
+		}
+		if (i < regex.length() && regex.charAt(i) == ']') {
+			i++;
+		}
+		int nesting = 1;
+		for (; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+					int end = regex.indexOf("\\E", i + 2);
+					if (end < 0) {
+						return -1;
+					}
+					i = end + 1;
+				} else {
+					i++;
+				}
+			} else if (c == '[') {
+				nesting++;
+			} else if (c == ']' && --nesting == 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String longer(String longest, CharSequence run) {
+		return run.length() > longest.length() ? run.toString() : longest;
+	}
+
+	/**
+	 * Folds a character for case-insensitive comparison without allocating.
+	 */
+	private static char fold(char c) {
+		if (c < 128) {
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		}
+		return Character.toLowerCase(c);
+	}
+
+	/**
+	 * Returns the first index of the pre-folded {@code needle} in {@code text}, or -1.
+	 */
+	private static int indexOf(CharSequence text, char[] needle) {
+		int last = text.length() - needle.length;
+		if (needle.length == 0) {
+			return 0;
+		}
+		char first = needle[0];
+		for (int i = 0; i <= last; i++) {
+			if (fold(text.charAt(i)) != first) {
+				continue;
+			}
+			int k = 1;
+			while (k < needle.length && fold(text.charAt(i + k)) == needle[k]) {
+				k++;
+			}
+			if (k == needle.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static char[] foldAll(String text) {
+		char[] folded = text.toCharArray();
+		for (int i = 0; i < folded.length; i++) {
+			folded[i] = fold(folded[i]);
+		}
+		return folded;
+	}
+
+	/**
+	 * Case-folded substring search over the characters in place.
+	 */
+	private static final class Substring extends NameMatcher {
+
+		private final char[] needle;
+
+		Substring(String keyword) {
+			this.needle = foldAll(keyword);
+		}
+
+		@Override
+		public boolean matches(CharSequence text) {
+			return indexOf(text, needle) >= 0;
+		}
+	}
+
+	/**
+	 * Compiled regular expression behind an optional required-literal prefilter.
+	 */
+	private static final class Regex extends NameMatcher {
+
+		private final Pattern pattern;
+		private final char[] prefilter;
+
+		Regex(Pattern pattern, String requiredLiteral) {
+			this.pattern = pattern;
+			this.prefilter = foldAll(requiredLiteral);
+		}
+
+		@Override
+		public boolean matches(CharSequence text) {
+			if (prefilter.length > 0 && indexOf(text, prefilter) < 0) {
+				return false;
+			}
+			return pattern.matcher(text).find();
+		}
+	}
+}
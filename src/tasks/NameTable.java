@@ -0,0 +1,216 @@
+package tasks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code NameTable} class holds every file below a root in memory for
+ * search-as-you-type. The files themselves are kept in a {@link ResultStore}; next to
+ * it, every name is stored case-folded as UTF-8 in one shared byte array, so a keystroke
+ * is answered by a parallel scan over that array without creating a single object
+ * per name.
+ *
+ * Because UTF-8 is self-synchronizing, a folded keyword occurs in a folded name's bytes
+ * exactly when it occurs in its characters, so the scan gives the same answers as
+ * {@link NameMatcher#substring(String)}.
+ *
+ * A table is a snapshot of the tree at the time it was loaded.
+ */
+public final class NameTable {
+
+	/** Names scanned by one parallel task; also how often cancellation is checked. */
+	private static final int CHUNK = 1 << 15;
+
+	private final Path root;
+	private final ResultStore records;
+	private final byte[] folded;
+	private final int[] ends;
+
+	/**
+	 * The files of a table matching one keyword, by id in ascending order.
+	 */
+	public static final class Matches {
+
+		private final NameTable table;
+		private final String keyword;
+		private final int[] ids;
+
+		private Matches(NameTable table, String keyword, int[] ids) {
+			this.table = table;
+			this.keyword = keyword;
+			this.ids = ids;
+		}
+
+		/**
+		 * @return Number of matching files.
+		 */
+		public int size() {
+			return ids.length;
+		}
+
+		/**
+		 * @param index Position among the matches.
+		 * @return The id of that file in its table.
+		 */
+		public int get(int index) {
+			return ids[index];
+		}
+
+		/**
+		 * @return The table searched.
+		 */
+		public NameTable getTable() {
+			return table;
+		}
+	}
+
+	private NameTable(Path root, ResultStore records) {
+		this.root = root;
+		this.records = records;
+		this.ends = new int[records.size()];
+		byte[] names = new byte[Math.max(16, records.size() * 16)];
+		int length = 0;
+		for (int id = 0; id < ends.length; id++) {
+			byte[] name = NameMatcher.fold(records.getName(id)).getBytes(StandardCharsets.UTF_8);
+			if (length + name.length > names.length) {
+				names = Arrays.copyOf(names, Math.max(length + name.length, names.length * 2));
+			}
+			System.arraycopy(name, 0, names, length, name.length);
+			length += name.length;
+			ends[id] = length;
+		}
+		this.folded = Arrays.copyOf(names, length);
+	}
+
+	/**
+	 * Walks {@code root} once and loads every regular file not pruned by {@code rules}
+	 * into a new table.
+	 *
+	 * @param root     The directory to load.
+	 * @param rules    Subtrees and files to skip.
+	 * @param progress Progress and cancellation state for the walk, or {@code null}.
+	 * @return The loaded table; partial if the walk was cancelled.
+	 * @throws IOException If the root itself cannot be read.
+	 */
+	public static NameTable load(Path root, PruneRules rules, ScanProgress progress) throws IOException {
+		ResultStore records = new ResultStore();
+		TreeWalker.walkRecords(root, rules, records::add, null, progress);
+		return of(root, records);
+	}
+
+	/**
+	 * Builds a table over files already collected.
+	 *
+	 * @param root    The directory the files were found in.
+	 * @param records The files; the table takes ownership.
+	 * @return The table.
+	 */
+	public static NameTable of(Path root, ResultStore records) {
+		return new NameTable(root, records);
+	}
+
+	/**
+	 * Finds the files whose names contain {@code keyword}, ignoring case. When the
+	 * keyword extends the keyword of {@code previous}, e.g. while it is being typed, only
+	 * the previous matches are scanned.
+	 *
+	 * @param keyword   The substring to look for.
+	 * @param previous  Matches of an earlier search of this table, or {@code null}.
+	 * @param cancelled Polled between chunks; once it returns {@code true} the search is abandoned.
+	 * @return The matches, or {@code null} if the search was cancelled.
+	 */
+	public Matches search(String keyword, Matches previous, BooleanSupplier cancelled) {
+		String key = NameMatcher.fold(keyword);
+		byte[] needle = key.getBytes(StandardCharsets.UTF_8);
+		boolean refine = previous != null && previous.table == this && key.contains(previous.keyword);
+		int count = refine ? previous.ids.length : ends.length;
+		int[][] chunks = IntStream.range(0, (count + CHUNK - 1) / CHUNK).parallel().mapToObj(chunk -> {
+			if (cancelled.getAsBoolean()) {
+				return null;
+			}
+			int from = chunk * CHUNK;
+			int to = Math.min(count, from + CHUNK);
+			int[] found = new int[to - from];
+			int n = 0;
+			for (int i = from; i < to; i++) {
+				int id = refine ? previous.ids[i] : i;
+				if (contains(id, needle)) {
+					found[n++] = id;
+				}
+			}
+			return Arrays.copyOf(found, n);
+		}).toArray(int[][]::new);
+
+		int total = 0;
+		for (int[] chunk : chunks) {
+			if (chunk == null) {
+				return null;
+			}
+			total += chunk.length;
+		}
+		int[] ids = new int[total];
+		int position = 0;
+		for (int[] chunk : chunks) {
+			System.arraycopy(chunk, 0, ids, position, chunk.length);
+			position += chunk.length;
+		}
+		return new Matches(this, key, ids);
+	}
+
+	/**
+	 * @return Number of files in the table.
+	 */
+	public int size() {
+		return ends.length;
+	}
+
+	/**
+	 * @return The directory the table was loaded from.
+	 */
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return The files of the table; ids are indexes into this store.
+	 */
+	public ResultStore getRecords() {
+		return records;
+	}
+
+	/**
+	 * @return An estimate of the heap held by the table.
+	 */
+	public long memoryBytes() {
+		return records.memoryBytes() + folded.length + (long) Integer.BYTES * ends.length;
+	}
+
+	/**
+	 * Tests whether the folded name of {@code id} contains {@code needle}.
+	 */
+	private boolean contains(int id, byte[] needle) {
+		int start = id == 0 ? 0 : ends[id - 1];
+		int last = ends[id] - needle.length;
+		if (needle.length == 0) {
+			return true;
+		}
+		byte first = needle[0];
+		for (int i = start; i <= last; i++) {
+			if (folded[i] != first) {
+				continue;
+			}
+			int k = 1;
+			while (k < needle.length && folded[i + k] == needle[k]) {
+				k++;
+			}
+			if (k == needle.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,395 @@
+package tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import enumerations.OSPath;
+
+/**
+ * The {@code PruneRules} class decides which parts of a tree a walk skips. The
+ * {@link TreeWalker} checks every subdirectory before descending into it, using only
+ * the attributes it has already read, so a pruned subtree costs one stat and is never
+ * listed. The rules are:
+ *
+ * <ul>
+ * <li>gitignore-style globs, matched against the name of every file and directory, or
+ * against its path relative to the root when the glob contains a {@code /}. A trailing
+ * {@code /} restricts a glob to directories, {@code **} spans directories, a leading
+ * {@code !} re-includes what an earlier glob excluded, and the last matching glob wins;</li>
+ * <li>skipping hidden directories, i.e. those whose name starts with a dot;</li>
+ * <li>a maximum depth, counted like {@code find -maxdepth}: 1 only reports the root's
+ * own files;</li>
+ * <li>a maximum number of entries read per directory;</li>
+ * <li>staying on the file system of the root.</li>
+ * </ul>
+ *
+ * They can also ask the walk to follow symbolic links to directories; a link leading
+ * back to one of its own ancestors is then reported as a loop instead of being entered.
+ *
+ * Rules are written as a comma-separated spec, e.g.
+ * {@code node_modules/,.git/,*.tmp,hidden,depth=12,files=100000,same-filesystem,follow-links,from=~/.gitignore}.
+ * The rules of each {@link OSPath} come from {@link #forPath(OSPath)}. What was skipped
+ * is counted by {@link ScanProgress}.
+ */
+public final class PruneRules {
+
+	private static final Logger LOGGER = Logger.getLogger(PruneRules.class.getName());
+
+	/** Rules that skip nothing. */
+	public static final PruneRules NONE = new PruneRules(List.of(), false, Integer.MAX_VALUE, Integer.MAX_VALUE, false,
+			false);
+
+	private final List<String> globs;
+	private final Rule[] rules;
+	private final boolean skipHidden;
+	private final int maxDepth;
+	private final int maxEntries;
+	private final boolean sameFileSystem;
+	private final boolean followLinks;
+
+	/**
+	 * One compiled glob.
+	 */
+	private static final class Rule {
+
+		private final boolean negated;
+		private final boolean directoryOnly;
+		private final boolean anchored;
+		private final String literal;
+		private final Pattern pattern;
+
+		Rule(String glob) {
+			negated = glob.startsWith("!");
+			String body = negated ? glob.substring(1) : glob;
+			directoryOnly = body.endsWith("/");
+			if (directoryOnly) {
+				body = body.substring(0, body.length() - 1);
+			}
+			anchored = body.indexOf('/') >= 0;
+			if (body.startsWith("/")) {
+				body = body.substring(1);
+			}
+			boolean wildcards = body.chars().anyMatch(c -> "*?[\\".indexOf(c) >= 0);
+			literal = wildcards ? null : body;
+			pattern = wildcards ? Pattern.compile(toRegex(body), Pattern.DOTALL) : null;
+		}
+
+		boolean matches(String text) {
+			return literal != null ? literal.equals(text) : pattern.matcher(text).matches();
+		}
+	}
+
+	/**
+	 * Creates a rule set.
+	 *
+	 * @param globs          gitignore-style globs, applied in order.
+	 * @param skipHidden     {@code true} to skip directories whose name starts with a dot.
+	 * @param maxDepth       Deepest level reported, where the root's own files are level 1.
+	 * @param maxEntries     Most entries read from a single directory; the rest are skipped.
+	 * @param sameFileSystem {@code true} to skip directories on another file system than the root.
+	 */
+	public PruneRules(List<String> globs, boolean skipHidden, int maxDepth, int maxEntries, boolean sameFileSystem) {
+		this(globs, skipHidden, maxDepth, maxEntries, sameFileSystem, false);
+	}
+
+	/**
+	 * Creates a rule set that may follow symbolic links to directories.
+	 *
+	 * @param globs          gitignore-style globs, applied in order.
+	 * @param skipHidden     {@code true} to skip directories whose name starts with a dot.
+	 * @param maxDepth       Deepest level reported, where the root's own files are level 1.
+	 * @param maxEntries     Most entries read from a single directory; the rest are skipped.
+	 * @param sameFileSystem {@code true} to skip directories on another file system than the root.
+	 * @param followLinks    {@code true} to descend into symbolic links to directories.
+	 */
+	public PruneRules(List<String> globs, boolean skipHidden, int maxDepth, int maxEntries, boolean sameFileSystem,
+			boolean followLinks) {
+		this.globs = List.copyOf(globs);
+		this.rules = this.globs.stream().map(Rule::new).toArray(Rule[]::new);
+		this.skipHidden = skipHidden;
+		this.maxDepth = Math.max(1, maxDepth);
+		this.maxEntries = Math.max(1, maxEntries);
+		this.sameFileSystem = sameFileSystem;
+		this.followLinks = followLinks;
+	}
+
+	/**
+	 * Parses a comma-separated spec. Besides globs it accepts {@code hidden},
+	 * {@code depth=N}, {@code files=N}, {@code same-filesystem}, {@code follow-links} and {@code from=FILE},
+	 * which reads further globs from a gitignore file.
+	 *
+	 * @param spec The spec; blank for no rules.
+	 * @return The rules.
+	 * @throws IllegalArgumentException If a number is malformed or an ignore file cannot be read.
+	 */
+	public static PruneRules parse(String spec) {
+		List<String> globs = new ArrayList<>();
+		boolean hidden = false;
+		int depth = Integer.MAX_VALUE;
+		int entries = Integer.MAX_VALUE;
+		boolean sameFileSystem = false;
+		boolean followLinks = false;
+		for (String token : spec.split(",")) {
+			token = token.strip();
+			if (token.isEmpty()) {
+				continue;
+			} else if (token.equals("hidden")) {
+				hidden = true;
+			} else if (token.equals("same-filesystem")) {
+				sameFileSystem = true;
+			} else if (token.equals("follow-links")) {
+				followLinks = true;
+			} else if (token.startsWith("depth=")) {
+				depth = Integer.parseInt(token.substring(6));
+			} else if (token.startsWith("files=")) {
+				entries = Integer.parseInt(token.substring(6));
+			} else if (token.startsWith("from=")) {
+				String file = token.substring(5);
+				if (file.startsWith("~" + File.separator)) {
+					file = System.getProperty("user.home") + file.substring(1);
+				}
+				try {
+					globs.addAll(readIgnoreFile(Paths.get(file)));
+				} catch (IOException e) {
+					throw new IllegalArgumentException("Cannot read ignore file " + file, e);
+				}
+			} else {
+				globs.add(token);
+			}
+		}
+		if (globs.isEmpty() && !hidden && depth == Integer.MAX_VALUE && entries == Integer.MAX_VALUE
+				&& !sameFileSystem && !followLinks) {
+			return NONE;
+		}
+		return new PruneRules(globs, hidden, depth, entries, sameFileSystem, followLinks);
+	}
+
+	/**
+	 * Returns the rules for searches of {@code path}: the {@code filesearcher.prune.<NAME>}
+	 * system property if set (empty for none), otherwise the path's defaults.
+	 *
+	 * @param path The searched path.
+	 * @return The rules; {@link #NONE} if the configured spec is malformed.
+	 */
+	public static PruneRules forPath(OSPath path) {
+		String spec = System.getProperty("filesearcher.prune." + path.name(), path.getPruneSpec());
+		try {
+			return parse(spec);
+		} catch (IllegalArgumentException e) {
+			LOGGER.warning(() -> "Ignoring prune rules for " + path + ": " + e.getMessage());
+			return NONE;
+		}
+	}
+
+	/**
+	 * Reads the globs of a gitignore file, skipping blank lines and comments. Escapes
+	 * such as {@code \#} and {@code \!} are kept and matched literally.
+	 *
+	 * @param file The file to read.
+	 * @return The globs in file order.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static List<String> readIgnoreFile(Path file) throws IOException {
+		List<String> globs = new ArrayList<>();
+		for (String line : Files.readAllLines(file)) {
+			String glob = line.stripTrailing();
+			if (!glob.isEmpty() && !glob.startsWith("#")) {
+				globs.add(glob);
+			}
+		}
+		return globs;
+	}
+
+	/**
+	 * @return {@code true} if walks with these rules behave like walks without any.
+	 */
+	public boolean isEmpty() {
+		return rules.length == 0 && !skipHidden && maxDepth == Integer.MAX_VALUE && maxEntries == Integer.MAX_VALUE
+				&& !sameFileSystem && !followLinks;
+	}
+
+	/**
+	 * Decides whether a subdirectory is skipped, before it is listed.
+	 *
+	 * @param root      The root of the walk, for globs relative to it.
+	 * @param directory The subdirectory.
+	 * @param depth     Its depth, where the root's children are 1.
+	 * @return {@code true} to skip the subdirectory and everything below it.
+	 */
+	boolean prunes(Path root, Path directory, int depth) {
+		if (depth >= maxDepth) {
+			return true;
+		}
+		String name = directory.getFileName().toString();
+		return skipHidden && name.startsWith(".") || ignored(root, directory, name, true);
+	}
+
+	/**
+	 * Decides whether a regular file is left out of the results.
+	 *
+	 * @param root The root of the walk, for globs relative to it.
+	 * @param file The file.
+	 * @return {@code true} if a glob excludes it.
+	 */
+	boolean excludes(Path root, Path file) {
+		return rules.length > 0 && ignored(root, file, file.getFileName().toString(), false);
+	}
+
+	/**
+	 * @return Whether the rules treat an entry the same whichever root above it a walk
+	 *         starts from, i.e. there is no depth limit and no glob relative to the root.
+	 */
+	boolean isRootIndependent() {
+		if (maxDepth != Integer.MAX_VALUE) {
+			return false;
+		}
+		for (Rule rule : rules) {
+			if (rule.anchored) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Most entries read from a single directory.
+	 */
+	int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @return Whether directories on another file system than the root are skipped.
+	 */
+	boolean isSameFileSystem() {
+		return sameFileSystem;
+	}
+
+	/**
+	 * @return Whether walks descend into symbolic links to directories.
+	 */
+	boolean isFollowLinks() {
+		return followLinks;
+	}
+
+	/**
+	 * Returns an identifier of the file system holding an entry: the device number of its
+	 * file key where the platform exposes one, otherwise its {@link FileStore}.
+	 *
+	 * @param path  The entry.
+	 * @param attrs Its attributes, already read.
+	 * @return A value equal for two entries on the same file system.
+	 */
+	static Object fileSystem(Path path, BasicFileAttributes attrs) {
+		Object key = attrs.fileKey();
+		if (key != null) {
+			// Unix file keys print as "(dev=...,ino=...)".
+			String text = key.toString();
+			int comma = text.indexOf(',');
+			if (text.startsWith("(dev=") && comma > 0) {
+				return text.substring(5, comma);
+			}
+		}
+		try {
+			return Files.getFileStore(path);
+		} catch (IOException e) {
+			return path.getRoot();
+		}
+	}
+
+	/**
+	 * @return The spec these rules were built from, as accepted by {@link #parse(String)}.
+	 */
+	@Override
+	public String toString() {
+		List<String> spec = new ArrayList<>(globs);
+		if (skipHidden) {
+			spec.add("hidden");
+		}
+		if (maxDepth != Integer.MAX_VALUE) {
+			spec.add("depth=" + maxDepth);
+		}
+		if (maxEntries != Integer.MAX_VALUE) {
+			spec.add("files=" + maxEntries);
+		}
+		if (sameFileSystem) {
+			spec.add("same-filesystem");
+		}
+		if (followLinks) {
+			spec.add("follow-links");
+		}
+		return String.join(",", spec);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof PruneRules && toString().equals(other.toString());
+	}
+
+	@Override
+	public int hashCode() {
+		return toString().hashCode();
+	}
+
+	private boolean ignored(Path root, Path entry, String name, boolean directory) {
+		String relative = null;
+		boolean ignored = false;
+		for (Rule rule : rules) {
+			if (rule.negated != ignored || rule.directoryOnly && !directory) {
+				// Only a rule that would change the outcome needs to be evaluated.
+				continue;
+			}
+			String text = name;
+			if (rule.anchored) {
+				if (relative == null) {
+					relative = root.relativize(entry).toString().replace(File.separatorChar, '/');
+				}
+				text = relative;
+			}
+			if (rule.matches(text)) {
+				ignored = !rule.negated;
+			}
+		}
+		return ignored;
+	}
+
+	/**
+	 * Translates a gitignore glob into a regular expression over '/'-separated paths.
+	 */
+	private static String toRegex(String glob) {
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '*') {
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+					boolean directories = i + 2 < glob.length() && glob.charAt(i + 2) == '/';
+					regex.append(directories ? "(?:.*/)?" : ".*");
+					i += directories ? 2 : 1;
+				} else {
+					regex.append("[^/]*");
+				}
+			} else if (c == '?') {
+				regex.append("[^/]");
+			} else if (c == '[') {
+				int end = glob.indexOf(']', i + 2);
+				if (end < 0) {
+					regex.append("\\[");
+					continue;
+				}
+				String members = glob.substring(i + 1, end);
+				regex.append('[').append(members.startsWith("!") ? "^" + members.substring(1) : members).append(']');
+				i = end;
+			} else if (c == '\\' && i + 1 < glob.length()) {
+				regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return regex.toString();
+	}
+}
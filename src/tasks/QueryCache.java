@@ -0,0 +1,334 @@
+package tasks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code QueryCache} class keeps the results of recent keyword searches, keyed by
+ * root directory and case-folded keyword, so repeating a search does not walk the disk
+ * again. It is a bounded LRU: the least recently used entries are dropped once more
+ * than {@code filesearcher.query.cacheSize} searches, or more than
+ * {@code filesearcher.query.cacheMegabytes} of results, are held.
+ *
+ * A keyword that contains a cached keyword for the same root, e.g. "repo" after "rep",
+ * can only match a subset of the cached files, so it is answered by filtering that
+ * result set in memory. The narrowed result is cached in turn.
+ *
+ * An entry is only used while it is still current:
+ *
+ * <ul>
+ * <li>Results of a walk remember the modification time of every directory walked, read
+ * before the directory was listed. Creating, deleting or renaming a file changes the
+ * time of its directory, so the entry is dropped as soon as any of them differs.</li>
+ * <li>Results answered by a {@link FilenameIndex} remember the index version, which its
+ * {@link IndexWatcher} bumps on every change it applies.</li>
+ * </ul>
+ *
+ * Sizes and modification times of the cached files are those read by the original
+ * search; editing a file in place does not change its directory and is not noticed.
+ */
+public final class QueryCache {
+
+	private static final Logger LOGGER = Logger.getLogger(QueryCache.class.getName());
+
+	private static QueryCache shared;
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder refinements = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Decides whether a cached result still reflects the file system.
+	 */
+	interface Validity {
+
+		/**
+		 * @return {@code true} if nothing the result depends on has changed.
+		 */
+		boolean isCurrent();
+	}
+
+	/**
+	 * One cached search: the root, the folded keyword, its results and how to check them.
+	 */
+	private static final class Entry {
+
+		private final String root;
+		private final String keyword;
+		private final ResultStore results;
+		private final Validity validity;
+		private final long bytes;
+
+		Entry(String root, String keyword, ResultStore results, Validity validity) {
+			this.root = root;
+			this.keyword = keyword;
+			this.results = results;
+			this.validity = validity;
+			this.bytes = results.memoryBytes();
+		}
+	}
+
+	/**
+	 * The modification times of the directories seen by one walk, recorded through
+	 * {@link #record(Path)} as the walker reaches each directory.
+	 */
+	static final class DirectorySnapshot implements Validity {
+
+		private Path[] directories = new Path[64];
+		private long[] modified = new long[64];
+		private int size;
+
+		/**
+		 * Records the current modification time of {@code directory}. Called by the
+		 * walker threads before the directory is listed.
+		 *
+		 * @param directory The directory about to be listed.
+		 */
+		void record(Path directory) {
+			long time = modifiedTime(directory);
+			synchronized (this) {
+				if (size == directories.length) {
+					directories = Arrays.copyOf(directories, size * 2);
+					modified = Arrays.copyOf(modified, size * 2);
+				}
+				directories[size] = directory;
+				modified[size] = time;
+				size++;
+			}
+		}
+
+		@Override
+		public synchronized boolean isCurrent() {
+			Path[] paths = directories;
+			long[] times = modified;
+			return IntStream.range(0, size).parallel().allMatch(i -> modifiedTime(paths[i]) == times[i]);
+		}
+
+		private static long modifiedTime(Path directory) {
+			try {
+				return Files.getLastModifiedTime(directory).to(TimeUnit.NANOSECONDS);
+			} catch (IOException e) {
+				return Long.MIN_VALUE;
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxEntries Largest number of searches kept.
+	 * @param maxBytes   Largest estimated heap held by the cached results.
+	 */
+	public QueryCache(int maxEntries, long maxBytes) {
+		this.maxEntries = Math.max(1, maxEntries);
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the cache shared by the GUI's searches, sized from system properties.
+	 *
+	 * @return The shared cache.
+	 */
+	public static synchronized QueryCache shared() {
+		if (shared == null) {
+			shared = new QueryCache(Integer.getInteger("filesearcher.query.cacheSize", 32),
+					Long.getLong("filesearcher.query.cacheMegabytes", 64) << 20);
+		}
+		return shared;
+	}
+
+	/**
+	 * Returns the results of searching {@code root} for {@code keyword}, either cached
+	 * for exactly this search or narrowed from a cached search for a shorter keyword.
+	 *
+	 * @param root    The searched directory.
+	 * @param keyword The case-insensitive keyword.
+	 * @return The matching files, which must not be modified, or {@code null} on a miss.
+	 */
+	public ResultStore lookup(Path root, String keyword) {
+		String rootKey = rootKey(root);
+		String folded = NameMatcher.fold(keyword);
+		Entry exact = entry(rootKey + '\0' + folded);
+		if (exact != null) {
+			hits.increment();
+			return exact.results;
+		}
+
+		for (Entry base; (base = narrowest(rootKey, folded)) != null;) {
+			if (!base.validity.isCurrent()) {
+				remove(base);
+				continue;
+			}
+			NameMatcher matcher = NameMatcher.substring(keyword);
+			ResultStore refined = new ResultStore();
+			for (int i = 0; i < base.results.size(); i++) {
+				if (matcher.matches(base.results.getName(i))) {
+					refined.add(base.results.get(i));
+				}
+			}
+			refinements.increment();
+			store(new Entry(rootKey, folded, refined, base.validity));
+			return refined;
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Caches the complete results of a walk over {@code root}.
+	 *
+	 * @param root     The searched directory.
+	 * @param keyword  The case-insensitive keyword.
+	 * @param results  Every matching file; the cache takes ownership.
+	 * @param snapshot The directories seen by the walk.
+	 */
+	void put(Path root, String keyword, ResultStore results, Validity snapshot) {
+		store(new Entry(rootKey(root), NameMatcher.fold(keyword), results, snapshot));
+	}
+
+	/**
+	 * Caches the results of a search answered by {@code index}, valid until it changes.
+	 *
+	 * @param root    The searched directory.
+	 * @param keyword The case-insensitive keyword.
+	 * @param results Every matching file; the cache takes ownership.
+	 * @param index   The index that answered the search.
+	 * @param version The index version read before the search.
+	 */
+	void put(Path root, String keyword, ResultStore results, FilenameIndex index, long version) {
+		put(root, keyword, results, () -> index.isComplete() && index.getVersion() == version);
+	}
+
+	/**
+	 * Drops every cached search.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * @return Searches answered from an exact cached entry.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return Searches answered by narrowing the results of a shorter keyword.
+	 */
+	public long getRefinements() {
+		return refinements.sum();
+	}
+
+	/**
+	 * @return Searches that had to go to the disk or the index.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return Entries dropped because the file system changed under them.
+	 */
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	/**
+	 * @return Number of searches currently cached.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		long answered = hits.sum() + refinements.sum();
+		long total = answered + misses.sum();
+		return String.format("%d hits, %d refined, %d misses (%.0f%% answered from cache), %d invalidated, "
+				+ "%d evicted, %d entries holding %.1f MB", hits.sum(), refinements.sum(), misses.sum(),
+				total == 0 ? 0.0 : 100.0 * answered / total, invalidations.sum(), evictions.sum(), entries.size(),
+				bytes / 1e6);
+	}
+
+	/**
+	 * Returns the entry for {@code key} if it is still current, dropping it otherwise.
+	 */
+	private Entry entry(String key) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		if (entry == null || entry.validity.isCurrent()) {
+			return entry;
+		}
+		remove(entry);
+		return null;
+	}
+
+	/**
+	 * Returns the cached search of {@code root} with the fewest results whose keyword is
+	 * contained in {@code folded}, or {@code null} if there is none.
+	 */
+	private synchronized Entry narrowest(String root, String folded) {
+		Entry best = null;
+		for (Entry entry : entries.values()) {
+			if (entry.root.equals(root) && folded.contains(entry.keyword)
+					&& (best == null || entry.results.size() < best.results.size())) {
+				best = entry;
+			}
+		}
+		if (best != null) {
+			// Touch it so a base that keeps getting narrowed stays in the cache.
+			entries.get(best.root + '\0' + best.keyword);
+		}
+		return best;
+	}
+
+	private synchronized void store(Entry entry) {
+		if (entry.bytes > maxBytes) {
+			return;
+		}
+		Entry old = entries.put(entry.root + '\0' + entry.keyword, entry);
+		if (old != null) {
+			bytes -= old.bytes;
+		}
+		bytes += entry.bytes;
+		Iterator<Entry> eldest = entries.values().iterator();
+		while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+			Entry evicted = eldest.next();
+			eldest.remove();
+			bytes -= evicted.bytes;
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * Drops an entry found to be stale, unless it was already replaced.
+	 */
+	private synchronized void remove(Entry entry) {
+		if (entries.remove(entry.root + '\0' + entry.keyword, entry)) {
+			bytes -= entry.bytes;
+			invalidations.increment();
+			LOGGER.fine(() -> "Dropped stale cached search for [" + entry.keyword + "] under " + entry.root);
+		}
+	}
+
+	private static String rootKey(Path root) {
+		return root.toAbsolutePath().normalize().toString();
+	}
+}
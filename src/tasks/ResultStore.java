@@ -0,0 +1,216 @@
+package tasks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code ResultStore} class holds search results in primitive columns instead of
+ * one object graph per hit. Each result is a parent directory id, its file name as
+ * UTF-8 bytes in a shared buffer, and its size, modification time and flags.
+ * Directory paths are stored once and shared by every result below them.
+ *
+ * {@link Path}, {@link File} and {@link FileRecord} objects are only created when a
+ * result is read, so a million hits cost a few dozen bytes each instead of the
+ * hundreds taken by a {@code HashSet<File>}.
+ *
+ * Names the platform charset cannot decode are the one exception: their string form
+ * is lossy, so the original {@link Path} is kept for them.
+ *
+ * {@link #add(FileRecord)} may be called from several scan threads at once. Results
+ * keep the order in which they were added and are never removed.
+ */
+public final class ResultStore extends AbstractCollection<FileRecord> {
+
+	/** Directory paths, referenced by id from {@link #parents}. */
+	private final List<Path> directories = new ArrayList<>();
+	private final Map<Path, Integer> directoryIds = new ConcurrentHashMap<>();
+
+	/** Original paths of results whose names do not survive decoding, by result index. */
+	private final Map<Integer, Path> undecodable = new HashMap<>();
+
+	private int[] parents = new int[256];
+	private int[] nameEnds = new int[256];
+	private long[] sizes = new long[256];
+	private long[] modified = new long[256];
+	private byte[] flags = new byte[256];
+	private byte[] names = new byte[4096];
+	private int nameLength;
+	private int size;
+
+	/**
+	 * Appends one result; only its attributes are kept, not the record itself.
+	 *
+	 * @param record The result to store.
+	 * @return Always {@code true}.
+	 */
+	@Override
+	public boolean add(FileRecord record) {
+		Path path = record.getPath();
+		Path parent = path.getParent();
+		int directory = parent == null ? -1 : directoryId(parent);
+		String name = (parent == null ? path : path.getFileName()).toString();
+		append(directory, name.getBytes(StandardCharsets.UTF_8), name.indexOf('\uFFFD') >= 0 ? path : null,
+				record.getSize(), record.getLastModified(),
+				record.isSymbolicLink() ? FileRecord.SYMBOLIC_LINK : FileRecord.REGULAR);
+		return true;
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @param index The result index.
+	 * @return The materialized path of that result.
+	 */
+	public synchronized Path getPath(int index) {
+		Objects.checkIndex(index, size);
+		Path original = undecodable.get(index);
+		if (original != null) {
+			return original;
+		}
+		int start = index == 0 ? 0 : nameEnds[index - 1];
+		String name = new String(names, start, nameEnds[index] - start, StandardCharsets.UTF_8);
+		return parents[index] < 0 ? Path.of(name) : directories.get(parents[index]).resolve(name);
+	}
+
+	/**
+	 * @param index The result index.
+	 * @return The file name of that result, without creating a {@link Path}.
+	 */
+	public synchronized String getName(int index) {
+		Objects.checkIndex(index, size);
+		Path original = undecodable.get(index);
+		if (original != null) {
+			return (original.getFileName() == null ? original : original.getFileName()).toString();
+		}
+		int start = index == 0 ? 0 : nameEnds[index - 1];
+		return new String(names, start, nameEnds[index] - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param index The result index.
+	 * @return The size of that result in bytes, without creating any object.
+	 */
+	public synchronized long getSize(int index) {
+		Objects.checkIndex(index, size);
+		return sizes[index];
+	}
+
+	/**
+	 * @param index The result index.
+	 * @return The modification time of that result in milliseconds since the epoch.
+	 */
+	public synchronized long getLastModified(int index) {
+		Objects.checkIndex(index, size);
+		return modified[index];
+	}
+
+	/**
+	 * @param index The result index.
+	 * @return A record materialized for that result.
+	 */
+	public synchronized FileRecord get(int index) {
+		return new FileRecord(getPath(index), sizes[index], modified[index], flags[index]);
+	}
+
+	/**
+	 * Iterates over records created one at a time. Results added during iteration
+	 * may or may not be seen.
+	 */
+	@Override
+	public Iterator<FileRecord> iterator() {
+		return new Iterator<>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < size();
+			}
+
+			@Override
+			public FileRecord next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return get(next++);
+			}
+		};
+	}
+
+	/**
+	 * Returns a read-only list view that creates each {@link File} when it is accessed,
+	 * for callers of the older {@code List<File>} APIs.
+	 *
+	 * @return The view.
+	 */
+	public List<File> asFileList() {
+		return new AbstractList<>() {
+			@Override
+			public File get(int index) {
+				return getPath(index).toFile();
+			}
+
+			@Override
+			public int size() {
+				return ResultStore.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Returns an estimate of the heap held by this store, counting array capacity.
+	 *
+	 * @return Estimated bytes.
+	 */
+	public synchronized long memoryBytes() {
+		long bytes = (long) parents.length * (Integer.BYTES * 2 + Long.BYTES * 2 + 1) + names.length;
+		for (Path directory : directories) {
+			bytes += 64 + 2L * directory.toString().length() + 48;
+		}
+		return bytes;
+	}
+
+	private int directoryId(Path directory) {
+		Integer id = directoryIds.get(directory);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			return directoryIds.computeIfAbsent(directory, d -> {
+				directories.add(d);
+				return directories.size() - 1;
+			});
+		}
+	}
+
+	private synchronized void append(int directory, byte[] name, Path original, long length, long lastModified,
+			int flag) {
+		if (size == parents.length) {
+			int grown = size * 2;
+			parents = Arrays.copyOf(parents, grown);
+			nameEnds = Arrays.copyOf(nameEnds, grown);
+			sizes = Arrays.copyOf(sizes, grown);
+			modified = Arrays.copyOf(modified, grown);
+			flags = Arrays.copyOf(flags, grown);
+		}
+		if (nameLength + name.length > names.length) {
+			names = Arrays.copyOf(names, Math.max(nameLength + name.length, names.length * 2));
+		}
+		System.arraycopy(name, 0, names, nameLength, name.length);
+		nameLength += name.length;
+		parents[size] = directory;
+		nameEnds[size] = nameLength;
+		sizes[size] = length;
+		modified[size] = lastModified;
+		flags[size] = (byte) flag;
+		if (original != null) {
+			undecodable.put(size, original);
+		}
+		size++;
+	}
+}
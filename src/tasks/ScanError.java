@@ -0,0 +1,85 @@
+package tasks;
+
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Path;
+
+/**
+ * The {@code ScanError} class records one part of a tree that a traversal could not
+ * read. The walk skips it and goes on, so a scan that hit errors still delivers
+ * everything it could reach, and its {@link ScanProgress} lists what is missing.
+ */
+public final class ScanError {
+
+	/**
+	 * What went wrong.
+	 */
+	public enum Kind {
+		/** A root could not be read; nothing below it was scanned. */
+		ROOT,
+		/** A directory could not be opened or was only partly listed. */
+		DIRECTORY,
+		/** The attributes of an entry could not be read, so it was skipped. */
+		ATTRIBUTES,
+		/** A followed symbolic link leads back to one of its own ancestors. */
+		LOOP
+	}
+
+	private final Path path;
+	private final Kind kind;
+	private final String message;
+
+	/**
+	 * @param path    The entry that could not be read.
+	 * @param kind    What went wrong.
+	 * @param message The reason, e.g. the exception's description.
+	 */
+	public ScanError(Path path, Kind kind, String message) {
+		this.path = path;
+		this.kind = kind;
+		this.message = message;
+	}
+
+	/**
+	 * Describes the failure {@code e} at {@code path}.
+	 *
+	 * @param path The entry that could not be read.
+	 * @param kind What went wrong.
+	 * @param e    The failure.
+	 * @return The error.
+	 */
+	static ScanError of(Path path, Kind kind, Exception e) {
+		Throwable cause = e instanceof DirectoryIteratorException ? e.getCause() : e;
+		String reason = cause.getClass().getSimpleName();
+		// File system exceptions repeat the path as their message.
+		if (cause.getMessage() != null && !cause.getMessage().equals(path.toString())) {
+			reason += ": " + cause.getMessage();
+		}
+		return new ScanError(path, kind, reason);
+	}
+
+	/**
+	 * @return The entry that could not be read.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return What went wrong.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return The reason.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return kind + " " + path + " (" + message + ")";
+	}
+}
@@ -0,0 +1,228 @@
+package tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import interfaces.ScanListener;
+
+/**
+ * The {@code ScanProgress} class counts what a running traversal has visited and
+ * carries its cancellation flag. {@link TreeWalker} updates the counters from every
+ * worker thread and checks {@link #isCancelled()} before each directory and entry,
+ * so a cancelled scan stops within one directory listing.
+ *
+ * Registered {@link ScanListener}s are notified at most every 100 ms while the scan
+ * runs, on whichever worker thread crosses the interval, and once more when it finishes.
+ *
+ * Parts of the tree that could not be read are recorded as {@link ScanError}s instead
+ * of failing the scan. All of them are counted; the first
+ * {@code filesearcher.scan.maxErrors} are kept for {@link #getErrors()}.
+ */
+public class ScanProgress {
+
+	private static final long REPORT_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/** Errors kept with their details; further ones are only counted. */
+	private static final int MAX_ERRORS = Integer.getInteger("filesearcher.scan.maxErrors", 1000);
+
+	private final LongAdder directories = new LongAdder();
+	private final LongAdder files = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder prunedDirectories = new LongAdder();
+	private final LongAdder excludedFiles = new LongAdder();
+	private final LongAdder truncatedDirectories = new LongAdder();
+	private final LongAdder errorCount = new LongAdder();
+	private final Queue<ScanError> errors = new ConcurrentLinkedQueue<>();
+	private final List<ScanListener> listeners = new CopyOnWriteArrayList<>();
+	private final AtomicLong nextReport = new AtomicLong();
+
+	private volatile long startTime = System.nanoTime();
+	private volatile long endTime;
+	private volatile boolean cancelled;
+
+	/**
+	 * Registers a listener for periodic progress reports.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public void addListener(ScanListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Requests that the scan stop as soon as possible.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return {@code true} once {@link #cancel()} has been called.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Resets the counters and the clock at the beginning of a scan.
+	 */
+	public void start() {
+		directories.reset();
+		files.reset();
+		bytes.reset();
+		prunedDirectories.reset();
+		excludedFiles.reset();
+		truncatedDirectories.reset();
+		errorCount.reset();
+		errors.clear();
+		endTime = 0;
+		startTime = System.nanoTime();
+		nextReport.set(startTime + REPORT_INTERVAL);
+	}
+
+	/**
+	 * Stops the clock and sends the final report.
+	 */
+	public void finish() {
+		endTime = System.nanoTime();
+		for (ScanListener listener : listeners) {
+			listener.onFinished(this);
+		}
+	}
+
+	void directoryVisited() {
+		directories.increment();
+		report();
+	}
+
+	void fileVisited(long size) {
+		files.increment();
+		bytes.add(size);
+		report();
+	}
+
+	void directoryPruned() {
+		prunedDirectories.increment();
+	}
+
+	void fileExcluded() {
+		excludedFiles.increment();
+	}
+
+	void directoryTruncated() {
+		truncatedDirectories.increment();
+	}
+
+	void error(ScanError error) {
+		errorCount.increment();
+		if (errorCount.sum() <= MAX_ERRORS) {
+			errors.add(error);
+		}
+	}
+
+	/**
+	 * @return Directories listed so far.
+	 */
+	public long getDirectories() {
+		return directories.sum();
+	}
+
+	/**
+	 * @return Regular files visited so far.
+	 */
+	public long getFiles() {
+		return files.sum();
+	}
+
+	/**
+	 * @return Total size in bytes of the files visited so far.
+	 */
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	/**
+	 * @return Subdirectories skipped by {@link PruneRules} without being listed.
+	 */
+	public long getPrunedDirectories() {
+		return prunedDirectories.sum();
+	}
+
+	/**
+	 * @return Files left out by the globs of {@link PruneRules}.
+	 */
+	public long getExcludedFiles() {
+		return excludedFiles.sum();
+	}
+
+	/**
+	 * @return Directories whose listing stopped at the per-directory entry limit.
+	 */
+	public long getTruncatedDirectories() {
+		return truncatedDirectories.sum();
+	}
+
+	/**
+	 * @return Number of entries that could not be read, including those not kept in {@link #getErrors()}.
+	 */
+	public long getErrorCount() {
+		return errorCount.sum();
+	}
+
+	/**
+	 * @return The first errors of the scan, in no particular order.
+	 */
+	public List<ScanError> getErrors() {
+		return new ArrayList<>(errors);
+	}
+
+	/**
+	 * @return Milliseconds since the scan started, or its total duration once finished.
+	 */
+	public long getElapsedMillis() {
+		long end = endTime == 0 ? System.nanoTime() : endTime;
+		return TimeUnit.NANOSECONDS.toMillis(end - startTime);
+	}
+
+	/**
+	 * @return Files visited per second since the scan started.
+	 */
+	public double getFilesPerSecond() {
+		long elapsed = getElapsedMillis();
+		return elapsed == 0 ? 0 : getFiles() * 1000.0 / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		String text = String.format("%,d directories, %,d files, %.1f MB, %,.0f files/s", getDirectories(), getFiles(),
+				getBytes() / 1048576.0, getFilesPerSecond());
+		long pruned = getPrunedDirectories();
+		long excluded = getExcludedFiles();
+		long truncated = getTruncatedDirectories();
+		if (pruned + excluded + truncated != 0) {
+			text += String.format("; skipped %,d directories, %,d files, %,d truncated listings", pruned, excluded,
+					truncated);
+		}
+		long failed = getErrorCount();
+		return failed == 0 ? text : text + String.format("; %,d unreadable", failed);
+	}
+
+	private void report() {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		long now = System.nanoTime();
+		long due = nextReport.get();
+		if (now >= due && nextReport.compareAndSet(due, now + REPORT_INTERVAL)) {
+			for (ScanListener listener : listeners) {
+				listener.onProgress(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package tasks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import interfaces.ScanListener;
+
+/**
+ * The {@code TopFiles} class finds the first N files of a tree in one order, e.g. the
+ * largest or newest, without collecting every file. Each walker thread offers its files
+ * to one of a fixed set of bounded heaps, so a file that cannot make the top N is
+ * rejected after a single comparison and memory stays proportional to N however large
+ * the tree is. The heaps are merged when the walk ends, and on request while it runs.
+ *
+ * Files of equal rank are ordered by path, so the result does not depend on the order
+ * in which the threads reached them.
+ */
+public class TopFiles implements Callable<List<FileRecord>> {
+
+	private static final Logger LOGGER = Logger.getLogger(TopFiles.class.getName());
+
+	/** Number of heaps; walker threads are spread over them by thread id. */
+	private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+
+	/**
+	 * The orders a search can rank files by.
+	 */
+	public enum Order {
+		/** Biggest files first. */
+		LARGEST(Comparator.comparingLong(FileRecord::getSize).reversed()),
+		/** Most recently modified files first. */
+		NEWEST(Comparator.comparingLong(FileRecord::getLastModified).reversed()),
+		/** Least recently modified files first. */
+		OLDEST(Comparator.comparingLong(FileRecord::getLastModified)),
+		/** Files with the most path components first. */
+		DEEPEST(Comparator.comparingInt((FileRecord record) -> record.getPath().getNameCount()).reversed());
+
+		private final Comparator<FileRecord> comparator;
+
+		Order(Comparator<FileRecord> rank) {
+			this.comparator = rank.thenComparing(record -> record.getPath().toString());
+		}
+
+		/**
+		 * @return A comparator putting the files ranked first by this order first.
+		 */
+		public Comparator<FileRecord> comparator() {
+			return comparator;
+		}
+	}
+
+	private final List<Path> roots;
+	private final Predicate<FileRecord> files;
+	private final Order order;
+	private final int limit;
+	private final Heap[] heaps = new Heap[STRIPES];
+	private PruneRules rules = PruneRules.NONE;
+
+	private final ScanProgress progress = new ScanProgress();
+
+	/**
+	 * The best files seen by some of the walker threads, worst kept file at the head.
+	 */
+	private final class Heap {
+
+		private final PriorityQueue<FileRecord> queue = new PriorityQueue<>(order.comparator.reversed());
+
+		synchronized void offer(FileRecord record) {
+			if (queue.size() < limit) {
+				queue.add(record);
+			} else if (order.comparator.compare(record, queue.peek()) < 0) {
+				queue.poll();
+				queue.add(record);
+			}
+		}
+
+		synchronized void drainTo(List<FileRecord> target) {
+			target.addAll(queue);
+		}
+
+		synchronized void clear() {
+			queue.clear();
+		}
+	}
+
+	/**
+	 * Constructs a top-N search.
+	 *
+	 * @param roots The directories (or single files) to search, walked together.
+	 * @param files Selects the files ranked, e.g. by name.
+	 * @param order The order to rank them by.
+	 * @param limit How many files to return; at least 1.
+	 */
+	public TopFiles(List<Path> roots, Predicate<FileRecord> files, Order order, int limit) {
+		this.roots = List.copyOf(roots);
+		this.files = files;
+		this.order = order;
+		this.limit = Math.max(1, limit);
+		for (int i = 0; i < heaps.length; i++) {
+			heaps[i] = new Heap();
+		}
+	}
+
+	/**
+	 * Walks the roots and returns the top files, best first. A cancelled or partly
+	 * unreadable walk returns the top files among those it reached.
+	 *
+	 * @return At most {@code limit} files.
+	 */
+	@Override
+	public List<FileRecord> call() {
+		for (Heap heap : heaps) {
+			heap.clear();
+		}
+		progress.start();
+		try {
+			TreeWalker.walkRecords(roots, rules, record -> {
+				if (files.test(record)) {
+					heaps[(int) Thread.currentThread().threadId() & (STRIPES - 1)].offer(record);
+				}
+			}, null, progress);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Failed to traverse directories: " + roots, e);
+		} finally {
+			progress.finish();
+		}
+		List<FileRecord> top = snapshot();
+		LOGGER.info(() -> String.format("Ranked %,d files under %s by %s in %d ms.", progress.getFiles(), roots, order,
+				progress.getElapsedMillis()));
+		return top;
+	}
+
+	/**
+	 * Merges the heaps into the current top files. Safe to call from any thread while
+	 * {@link #call()} runs, e.g. from a progress listener, to show results early.
+	 *
+	 * @return At most {@code limit} files, best first; empty before the walk starts.
+	 */
+	public List<FileRecord> snapshot() {
+		List<FileRecord> merged = new ArrayList<>();
+		for (Heap heap : heaps) {
+			heap.drainTo(merged);
+		}
+		merged.sort(order.comparator);
+		return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+	}
+
+	/**
+	 * Sets the subtrees and files the walk skips; by default nothing is skipped.
+	 *
+	 * @param rules The rules to apply.
+	 */
+	public void setPruneRules(PruneRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Registers a listener that receives periodic progress reports during the walk.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public void addListener(ScanListener listener) {
+		progress.addListener(listener);
+	}
+
+	/**
+	 * Asks a running search to stop; the top files found so far are returned.
+	 */
+	public void cancel() {
+		progress.cancel();
+	}
+
+	/**
+	 * @return The progress of the walk.
+	 */
+	public ScanProgress getProgress() {
+		return progress;
+	}
+}
@@ -0,0 +1,874 @@
+package tasks;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import factory.VirtualFactory;
+
+/**
+ * The {@code TreeWalker} class traverses a directory tree in parallel on a shared
+ * work-stealing {@link ForkJoinPool}. Every directory is listed by its own
+ * {@link RecursiveAction}, so sibling subtrees are read concurrently and idle
+ * workers steal pending directories from busy ones.
+ *
+ * Like {@link Files#walk(Path, FileVisitOption...)} it does not descend into
+ * symbolic links to directories unless the {@link PruneRules} ask to follow them, but
+ * symbolic links to regular files are reported. A directory that is its own ancestor
+ * by file key, e.g. through a followed link, is recorded as a loop and not entered.
+ * Consumers passed to {@link #walk(Path, Consumer)} are called from several worker
+ * threads at once and must therefore be thread-safe. An optional {@link ScanProgress}
+ * receives visit counts and can cancel the walk.
+ *
+ * Each entry's {@link BasicFileAttributes} are read exactly once while its directory
+ * is listed. {@link #walkRecords} hands them on as a {@link FileRecord}, so callers that
+ * need sizes or modification times do not stat the file again.
+ *
+ * Setting {@code -Dfilesearcher.scan.mode=virtual} switches every walk to
+ * {@link #walkVirtual}, which lists each directory on its own virtual thread with at
+ * most {@code filesearcher.scan.concurrency} listings in flight. That keeps many
+ * blocking readdir/stat calls outstanding on high-latency network mounts without a
+ * matching number of platform threads.
+ *
+ * {@link #walkRecords(Collection, Consumer, Consumer, ScanProgress)} walks several roots
+ * concurrently into one stream. Roots nested in another root, after resolving symbolic
+ * links, are dropped when the outer walk would cover them, and every directory's file
+ * key is remembered during the walk, so a directory reachable from two roots (e.g.
+ * through a bind mount) is listed once.
+ *
+ * Walks given {@link PruneRules} check every subdirectory against them before
+ * scheduling it, with the attributes already read while listing its parent, so a
+ * pruned subtree is never opened. Skipped directories and files are counted by the
+ * {@link ScanProgress}.
+ *
+ * A directory or entry that cannot be read does not end the walk: it is recorded as a
+ * {@link ScanError} in the {@link ScanProgress} and the rest of the tree is still
+ * walked. Only a root that cannot be read is reported by an exception.
+ */
+public final class TreeWalker {
+
+	private static final Logger LOGGER = Logger.getLogger(TreeWalker.class.getName());
+
+	/** Shared pool for all scans; directory listing is I/O bound, so it runs wider than the core count. */
+	private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors() * 2);
+
+	/** Whether walks use one virtual thread per directory instead of the fork-join pool. */
+	private static final boolean VIRTUAL = "virtual".equalsIgnoreCase(System.getProperty("filesearcher.scan.mode"));
+
+	/** Creates and records the per-directory threads of virtual-thread walks. */
+	private static final VirtualFactory VIRTUAL_FACTORY = new VirtualFactory("Virtual Scan");
+
+	/** Maximum directories listed at once in virtual-thread mode. */
+	private static final int VIRTUAL_CONCURRENCY = Integer.getInteger("filesearcher.scan.concurrency", 256);
+
+	private TreeWalker() {
+	}
+
+	/**
+	 * Walks the tree rooted at {@code root} and passes every regular file to {@code sink}.
+	 * Unreadable subdirectories are logged and skipped.
+	 *
+	 * @param root The directory (or single file) to start from.
+	 * @param sink Thread-safe consumer receiving each regular file.
+	 * @throws IOException If the root itself cannot be read.
+	 */
+	public static void walk(Path root, Consumer<Path> sink) throws IOException {
+		walk(root, sink, null);
+	}
+
+	/**
+	 * Walks the tree rooted at {@code root}, passing every regular file to {@code sink}
+	 * and every directory, including the root, to {@code directories} before it is listed.
+	 *
+	 * @param root        The directory (or single file) to start from.
+	 * @param sink        Thread-safe consumer receiving each regular file.
+	 * @param directories Thread-safe consumer receiving each directory, or {@code null}.
+	 * @throws IOException If the root itself cannot be read.
+	 */
+	public static void walk(Path root, Consumer<Path> sink, Consumer<Path> directories) throws IOException {
+		walk(root, sink, directories, null);
+	}
+
+	/**
+	 * Walks the tree rooted at {@code root} like {@link #walk(Path, Consumer, Consumer)},
+	 * reporting every visit to {@code progress} and stopping early once it is cancelled.
+	 *
+	 * @param root        The directory (or single file) to start from.
+	 * @param sink        Thread-safe consumer receiving each regular file.
+	 * @param directories Thread-safe consumer receiving each directory, or {@code null}.
+	 * @param progress    Progress and cancellation state, or {@code null}.
+	 * @throws IOException If the root itself cannot be read.
+	 */
+	public static void walk(Path root, Consumer<Path> sink, Consumer<Path> directories, ScanProgress progress)
+			throws IOException {
+		walkRecords(root, record -> sink.accept(record.getPath()), directories, progress);
+	}
+
+	/**
+	 * Walks the tree rooted at {@code root} like {@link #walk(Path, Consumer, Consumer, ScanProgress)},
+	 * passing each regular file together with the attributes read for it during the walk.
+	 *
+	 * @param root        The directory (or single file) to start from.
+	 * @param sink        Thread-safe consumer receiving a record for each regular file.
+	 * @param directories Thread-safe consumer receiving each directory, or {@code null}.
+	 * @param progress    Progress and cancellation state, or {@code null}.
+	 * @throws IOException If the root itself cannot be read.
+	 */
+	public static void walkRecords(Path root, Consumer<FileRecord> sink, Consumer<Path> directories,
+			ScanProgress progress) throws IOException {
+		walkRecords(root, PruneRules.NONE, sink, directories, progress);
+	}
+
+	/**
+	 * Walks the tree rooted at {@code root} like {@link #walkRecords(Path, Consumer, Consumer, ScanProgress)},
+	 * skipping what {@code rules} prune. Pruned subdirectories are neither listed nor
+	 * passed to {@code directories}.
+	 *
+	 * @param root        The directory (or single file) to start from.
+	 * @param rules       Subtrees and files to skip.
+	 * @param sink        Thread-safe consumer receiving a record for each regular file.
+	 * @param directories Thread-safe consumer receiving each directory, or {@code null}.
+	 * @param progress    Progress and cancellation state, or {@code null}.
+	 * @throws IOException If the root itself cannot be read.
+	 */
+	public static void walkRecords(Path root, PruneRules rules, Consumer<FileRecord> sink,
+			Consumer<Path> directories, ScanProgress progress) throws IOException {
+		walkRoots(List.of(root), rules, sink, directories, progress);
+	}
+
+	/**
+	 * Walks every tree in {@code roots} concurrently, passing the files of all of them to
+	 * the same consumers. Each directory is listed once even if several roots reach it;
+	 * roots that cannot be read are logged, recorded in {@code progress} and skipped.
+	 *
+	 * @param roots       The directories (or single files) to start from.
+	 * @param sink        Thread-safe consumer receiving a record for each regular file.
+	 * @param directories Thread-safe consumer receiving each directory, or {@code null}.
+	 * @param progress    Progress and cancellation state, or {@code null}.
+	 * @throws IOException If none of the roots can be read.
+	 */
+	public static void walkRecords(Collection<Path> roots, Consumer<FileRecord> sink, Consumer<Path> directories,
+			ScanProgress progress) throws IOException {
+		walkRecords(roots, PruneRules.NONE, sink, directories, progress);
+	}
+
+	/**
+	 * Walks every tree in {@code roots} like {@link #walkRecords(Collection, Consumer, Consumer, ScanProgress)},
+	 * applying {@code rules} to each tree relative to its own root.
+	 *
+	 * @param roots       The directories (or single files) to start from.
+	 * @param rules       Subtrees and files to skip.
+	 * @param sink        Thread-safe consumer receiving a record for each regular file.
+	 * @param directories Thread-safe consumer receiving each directory, or {@code null}.
+	 * @param progress    Progress and cancellation state, or {@code null}.
+	 * @throws IOException If none of the roots can be read.
+	 */
+	public static void walkRecords(Collection<Path> roots, PruneRules rules, Consumer<FileRecord> sink,
+			Consumer<Path> directories, ScanProgress progress) throws IOException {
+		walkRoots(roots, rules, sink, directories, progress);
+	}
+
+	/**
+	 * Walks one root, or several roots concurrently with overlaps removed.
+	 */
+	private static void walkRoots(Collection<Path> roots, PruneRules rules, Consumer<FileRecord> sink,
+			Consumer<Path> directories, ScanProgress progress) throws IOException {
+		run(startWalks(roots, rules, sink, directories, progress), VIRTUAL_CONCURRENCY);
+	}
+
+	/**
+	 * Reports the roots that are regular files and returns the walks of the others, with
+	 * overlaps removed and, for several roots, one shared set of visited directories.
+	 */
+	private static List<Walk> startWalks(Collection<Path> roots, PruneRules rules, Consumer<FileRecord> sink,
+			Consumer<Path> directories, ScanProgress progress) throws IOException {
+		if (roots.size() == 1) {
+			Path root = roots.iterator().next();
+			Walk walk;
+			try {
+				walk = visitRoot(root, rules, sink, directories, progress, null);
+			} catch (IOException e) {
+				if (progress != null) {
+					progress.error(ScanError.of(root, ScanError.Kind.ROOT, e));
+				}
+				throw e;
+			}
+			return walk != null ? List.of(walk) : List.of();
+		}
+		Set<Object> visited = ConcurrentHashMap.newKeySet();
+		List<Walk> walks = new ArrayList<>();
+		for (Path root : distinctRoots(roots, rules)) {
+			try {
+				Walk walk = visitRoot(root, rules, sink, directories, progress, visited);
+				if (walk != null) {
+					walks.add(walk);
+				}
+			} catch (IOException e) {
+				// Read by distinctRoots a moment ago, so it just vanished; the others are still walked.
+				LOGGER.warning(() -> "Skipping root " + root + ": " + e);
+				if (progress != null) {
+					progress.error(ScanError.of(root, ScanError.Kind.ROOT, e));
+				}
+			}
+		}
+		return walks;
+	}
+
+	/**
+	 * Opens a walk of {@code roots} that its caller drives one directory at a time, as
+	 * {@link #walkRecords(Collection, PruneRules, Consumer, Consumer, ScanProgress)} would
+	 * walk them. Roots that are regular files go to {@code sink} right away; nothing else
+	 * is read until the cursor is advanced.
+	 *
+	 * @param roots    The directories (or single files) to start from.
+	 * @param rules    Subtrees and files to skip.
+	 * @param sink     Consumer receiving a record for each root that is a regular file.
+	 * @param progress Progress and cancellation state, or {@code null}.
+	 * @return The cursor.
+	 * @throws IOException If none of the roots can be read.
+	 */
+	static Cursor cursor(Collection<Path> roots, PruneRules rules, Consumer<FileRecord> sink,
+			ScanProgress progress) throws IOException {
+		Cursor cursor = new Cursor();
+		for (Walk walk : startWalks(roots, rules, sink, null, progress)) {
+			cursor.pending.add(new Step(walk, walk.start));
+		}
+		return cursor;
+	}
+
+	/**
+	 * Walks the subtree at {@code start}, which lies below {@code root}, applying
+	 * {@code rules} as a walk of {@code root} would, e.g. to pick up a directory created
+	 * after the walk of {@code root}. Nothing is walked if {@code start} itself is pruned.
+	 *
+	 * @param root        The root the rules are relative to.
+	 * @param start       The directory to walk.
+	 * @param rules       Subtrees and files to skip.
+	 * @param sink        Thread-safe consumer receiving a record for each regular file.
+	 * @param directories Thread-safe consumer receiving each directory, or {@code null}.
+	 * @throws IOException If {@code start} cannot be read.
+	 */
+	static void walkSubtree(Path root, Path start, PruneRules rules, Consumer<FileRecord> sink,
+			Consumer<Path> directories) throws IOException {
+		int depth = root.relativize(start).getNameCount();
+		if (start.equals(root) || rules.isEmpty()) {
+			walkRecords(start, rules, sink, directories, null);
+			return;
+		}
+		BasicFileAttributes attrs = Files.readAttributes(start, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		Object fileSystem = rules.isSameFileSystem()
+				? PruneRules.fileSystem(root, Files.readAttributes(root, BasicFileAttributes.class))
+				: null;
+		Directory directory = new Directory(null, start, depth, attrs.fileKey());
+		Walk walk = new Walk(root, rules, sink, directories, null, null, fileSystem, directory);
+		if (attrs.isDirectory() && !walk.prunes(start, attrs, depth)) {
+			run(List.of(walk), VIRTUAL_CONCURRENCY);
+		}
+	}
+
+	/**
+	 * Reduces {@code roots} to the ones that have to be walked, as
+	 * {@link #distinctRoots(Collection, PruneRules)} does for a walk that skips nothing.
+	 *
+	 * @param roots The requested roots, in any order.
+	 * @return The remaining roots, in their original order and spelling.
+	 * @throws IOException If none of the roots can be read.
+	 */
+	public static List<Path> distinctRoots(Collection<Path> roots) throws IOException {
+		return distinctRoots(roots, PruneRules.NONE);
+	}
+
+	/**
+	 * Reduces {@code roots} to the ones that have to be walked: each root is made
+	 * absolute, and a root is dropped if its real path equals the real path of another
+	 * root, if it is the same file as another root by file key, or if it lies inside
+	 * another remaining root whose walk under {@code rules} would find everything a walk
+	 * of the nested root finds. Any other nested root, e.g. one the outer walk prunes, is
+	 * kept; walking both still lists its directories only once. Roots that cannot be read
+	 * are logged and dropped.
+	 *
+	 * @param roots The requested roots, in any order.
+	 * @param rules The rules the roots will be walked with.
+	 * @return The remaining roots, in their original order and spelling.
+	 * @throws IOException If none of the roots can be read.
+	 */
+	public static List<Path> distinctRoots(Collection<Path> roots, PruneRules rules) throws IOException {
+		Map<Path, Path> real = new LinkedHashMap<>();
+		Set<Object> keys = new HashSet<>();
+		IOException failure = null;
+		for (Path root : roots) {
+			Path absolute = root.toAbsolutePath().normalize();
+			try {
+				Object key = Files.readAttributes(absolute, BasicFileAttributes.class).fileKey();
+				Path resolved = absolute.toRealPath();
+				if ((key == null || keys.add(key)) && !real.containsValue(resolved)) {
+					real.put(absolute, resolved);
+				}
+			} catch (IOException e) {
+				LOGGER.warning(() -> "Skipping unreadable root: " + root + " (" + e + ")");
+				failure = e;
+			}
+		}
+		// Outer roots are decided first, so a root is only dropped for one that is walked.
+		List<Path> outermostFirst = new ArrayList<>(real.values());
+		outermostFirst.sort(Comparator.comparingInt(Path::getNameCount));
+		Set<Path> kept = new HashSet<>();
+		for (Path root : outermostFirst) {
+			boolean reached = false;
+			for (Path other : kept) {
+				reached = reached || root.startsWith(other) && covers(other, root, rules);
+			}
+			if (!reached) {
+				kept.add(root);
+			}
+		}
+		List<Path> distinct = new ArrayList<>();
+		for (Map.Entry<Path, Path> root : real.entrySet()) {
+			if (kept.contains(root.getValue())) {
+				distinct.add(root.getKey());
+			} else {
+				LOGGER.fine(() -> "Skipping root inside another root: " + root.getKey());
+			}
+		}
+		if (distinct.isEmpty() && failure != null) {
+			throw failure;
+		}
+		return distinct;
+	}
+
+	/**
+	 * Decides whether a walk of {@code outer} under {@code rules} would find everything a
+	 * walk of {@code inner}, a real path below it, finds. No directory on the way may be
+	 * pruned or lie on another file system, and each must be among the entries read from
+	 * its parent. A regular file at the end must not be excluded; below a directory the
+	 * rules must not depend on where the walk started.
+	 */
+	private static boolean covers(Path outer, Path inner, PruneRules rules) {
+		if (rules.isEmpty()) {
+			return true;
+		}
+		try {
+			Object fileSystem = rules.isSameFileSystem()
+					? PruneRules.fileSystem(outer, Files.readAttributes(outer, BasicFileAttributes.class))
+					: null;
+			Path parent = outer;
+			int depth = outer.relativize(inner).getNameCount();
+			for (int level = 1; level <= depth; level++) {
+				Path entry = parent.resolve(inner.getName(outer.getNameCount() + level - 1));
+				if (!readWithin(parent, entry, rules.getMaxEntries())) {
+					return false;
+				}
+				BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+				if (!attrs.isDirectory()) {
+					return !rules.excludes(outer, entry);
+				}
+				if (rules.prunes(outer, entry, level)
+						|| fileSystem != null && !fileSystem.equals(PruneRules.fileSystem(entry, attrs))) {
+					return false;
+				}
+				parent = entry;
+			}
+			return rules.isRootIndependent();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Tells whether {@code entry} is among the first {@code maxEntries} entries listed
+	 * from {@code directory}, i.e. whether a walk limited to that many reads it.
+	 */
+	private static boolean readWithin(Path directory, Path entry, int maxEntries) throws IOException {
+		if (maxEntries == Integer.MAX_VALUE) {
+			return true;
+		}
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+			int remaining = maxEntries;
+			for (Path listed : entries) {
+				if (remaining-- == 0) {
+					return false;
+				}
+				if (listed.equals(entry)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Walks the tree rooted at {@code root} giving every directory its own virtual thread.
+	 *
+	 * @param root        The directory (or single file) to start from.
+	 * @param sink        Thread-safe consumer receiving a record for each regular file.
+	 * @param directories Thread-safe consumer receiving each directory, or {@code null}.
+	 * @param progress    Progress and cancellation state, or {@code null}.
+	 * @param concurrency Maximum number of directories listed at the same time.
+	 * @throws IOException If the root itself cannot be read, or the walk is interrupted.
+	 */
+	public static void walkVirtual(Path root, Consumer<FileRecord> sink, Consumer<Path> directories,
+			ScanProgress progress, int concurrency) throws IOException {
+		Walk walk = visitRoot(root, PruneRules.NONE, sink, directories, progress, null);
+		if (walk != null) {
+			new VirtualScan(concurrency).run(List.of(walk));
+		}
+	}
+
+	/**
+	 * Walks the tree rooted at {@code root} and collects every regular file accepted by {@code filter}.
+	 *
+	 * @param root   The directory to start from.
+	 * @param filter Predicate selecting which files are kept.
+	 * @return The matching files, in no particular order.
+	 * @throws IOException If the root itself cannot be read.
+	 */
+	public static List<Path> collect(Path root, Predicate<Path> filter) throws IOException {
+		Queue<Path> found = new ConcurrentLinkedQueue<>();
+		walk(root, path -> {
+			if (filter.test(path)) {
+				found.add(path);
+			}
+		});
+		return new ArrayList<>(found);
+	}
+
+	/**
+	 * Lists the starting directories of {@code walks} and everything below them, on the
+	 * fork-join pool or on virtual threads.
+	 */
+	private static void run(List<Walk> walks, int concurrency) throws IOException {
+		if (walks.isEmpty()) {
+			return;
+		}
+		if (VIRTUAL) {
+			new VirtualScan(concurrency).run(walks);
+		} else if (walks.size() == 1) {
+			POOL.invoke(new DirectoryTask(walks.get(0), walks.get(0).start));
+		} else {
+			List<DirectoryTask> tasks = new ArrayList<>();
+			for (Walk walk : walks) {
+				tasks.add(new DirectoryTask(walk, walk.start));
+			}
+			POOL.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+		}
+	}
+
+	/**
+	 * Reports {@code root} itself if it is a regular file, and records its file key in
+	 * {@code visited} when given.
+	 *
+	 * @return The walk of {@code root} if it is a directory that still has to be listed, else {@code null}.
+	 */
+	private static Walk visitRoot(Path root, PruneRules rules, Consumer<FileRecord> sink,
+			Consumer<Path> directories, ScanProgress progress, Set<Object> visited) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(root, BasicFileAttributes.class);
+		if (visited != null && attrs.fileKey() != null && !visited.add(attrs.fileKey())) {
+			return null;
+		}
+		if (attrs.isDirectory()) {
+			return new Walk(root, rules, sink, directories, progress, visited,
+					rules.isSameFileSystem() ? PruneRules.fileSystem(root, attrs) : null,
+					new Directory(null, root, 0, attrs.fileKey()));
+		}
+		if (attrs.isRegularFile()) {
+			if (progress != null) {
+				progress.fileVisited(attrs.size());
+			}
+			sink.accept(FileRecord.of(root, attrs, Files.isSymbolicLink(root)));
+		}
+		return null;
+	}
+
+	/**
+	 * Lists a single directory: reports it and its regular files, and hands every
+	 * subdirectory that is neither pruned, already visited nor one of its own ancestors
+	 * to {@code subdirectories} so the caller can schedule it. Entries that cannot be
+	 * read are recorded as errors and skipped; the rest of the directory is still listed.
+	 */
+	private static void listDirectory(Walk walk, Directory directory, Consumer<Directory> subdirectories) {
+		listDirectory(walk, directory, walk.sink, subdirectories);
+	}
+
+	/**
+	 * Lists a single directory like {@link #listDirectory(Walk, Directory, Consumer)},
+	 * but reports its files to {@code sink} instead of the walk's own consumer.
+	 */
+	private static void listDirectory(Walk walk, Directory directory, Consumer<FileRecord> sink,
+			Consumer<Directory> subdirectories) {
+		ScanProgress progress = walk.progress;
+		if (progress != null) {
+			if (progress.isCancelled()) {
+				return;
+			}
+			progress.directoryVisited();
+		}
+		if (walk.directories != null) {
+			walk.directories.accept(directory.path);
+		}
+		int depth = directory.depth;
+		int remaining = walk.rules.getMaxEntries();
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory.path)) {
+			for (Path entry : entries) {
+				if (progress != null && progress.isCancelled()) {
+					break;
+				}
+				if (remaining-- == 0) {
+					if (progress != null) {
+						progress.directoryTruncated();
+					}
+					break;
+				}
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				} catch (IOException e) {
+					walk.error(entry, ScanError.Kind.ATTRIBUTES, e);
+					continue;
+				}
+
+				boolean symbolicLink = attrs.isSymbolicLink();
+				if (symbolicLink) {
+					// Links to files report their target; links to directories are only followed on request.
+					try {
+						attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+					} catch (IOException e) {
+						// A dangling link is not an error.
+						continue;
+					}
+					if (attrs.isDirectory() && !walk.rules.isFollowLinks()) {
+						continue;
+					}
+				}
+
+				if (attrs.isDirectory()) {
+					Object key = attrs.fileKey();
+					if (walk.prunes(entry, attrs, depth + 1)) {
+						if (progress != null) {
+							progress.directoryPruned();
+						}
+					} else if (key != null && directory.hasAncestor(key)) {
+						walk.error(entry, ScanError.Kind.LOOP, new FileSystemLoopException(entry.toString()));
+					} else if (walk.visited == null || key == null || walk.visited.add(key)) {
+						subdirectories.accept(new Directory(directory, entry, depth + 1, key));
+					}
+				} else if (attrs.isRegularFile()) {
+					if (walk.excludes(entry)) {
+						if (progress != null) {
+							progress.fileExcluded();
+						}
+						continue;
+					}
+					if (progress != null) {
+						progress.fileVisited(attrs.size());
+					}
+					sink.accept(FileRecord.of(entry, attrs, symbolicLink));
+				}
+			}
+		} catch (IOException | DirectoryIteratorException e) {
+			walk.error(directory.path, ScanError.Kind.DIRECTORY, e);
+		}
+	}
+
+	/**
+	 * A walk listed on the caller's thread, one directory per {@link #advance(Consumer)},
+	 * so it goes no further than its caller asks. Pending subtrees can be handed to
+	 * another cursor with {@link #split()} and walked concurrently; directories reachable
+	 * from both are still listed once. A cursor itself is not thread-safe.
+	 */
+	static final class Cursor {
+
+		/** Directories still to be listed; taken from the back, split off from the front. */
+		private final Deque<Step> pending = new ArrayDeque<>();
+
+		private Cursor() {
+		}
+
+		/**
+		 * Lists the next pending directory, depth first, and reports its regular files.
+		 *
+		 * @param sink Consumer receiving a record for each regular file listed.
+		 * @return {@code false} if nothing was left to list.
+		 */
+		boolean advance(Consumer<FileRecord> sink) {
+			Step step = pending.pollLast();
+			if (step == null) {
+				return false;
+			}
+			listDirectory(step.walk, step.directory, sink, directory -> pending.add(new Step(step.walk, directory)));
+			return true;
+		}
+
+		/**
+		 * Hands the shallower half of the pending directories to a new cursor.
+		 *
+		 * @return The new cursor, or {@code null} if fewer than two directories are pending.
+		 */
+		Cursor split() {
+			if (pending.size() < 2) {
+				return null;
+			}
+			Cursor other = new Cursor();
+			for (int i = pending.size() / 2; i > 0; i--) {
+				other.pending.add(pending.pollFirst());
+			}
+			return other;
+		}
+
+		/**
+		 * @return Number of directories waiting to be listed.
+		 */
+		int pending() {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * A directory of a walk that has yet to be listed.
+	 */
+	private static final class Step {
+
+		private final Walk walk;
+		private final Directory directory;
+
+		Step(Walk walk, Directory directory) {
+			this.walk = walk;
+			this.directory = directory;
+		}
+	}
+
+	/**
+	 * The state shared by every directory of one root's walk.
+	 */
+	private static final class Walk {
+
+		private final Path root;
+		private final PruneRules rules;
+		private final Consumer<FileRecord> sink;
+		private final Consumer<Path> directories;
+		private final ScanProgress progress;
+
+		/** File keys of the directories of all roots walked together, or {@code null}. */
+		private final Set<Object> visited;
+
+		/** The root's file system, when the rules keep walks on it. */
+		private final Object fileSystem;
+
+		/** Where listing starts; the root unless only a subtree is walked. */
+		private final Directory start;
+
+		Walk(Path root, PruneRules rules, Consumer<FileRecord> sink, Consumer<Path> directories,
+				ScanProgress progress, Set<Object> visited, Object fileSystem, Directory start) {
+			this.root = root;
+			this.rules = rules;
+			this.sink = sink;
+			this.directories = directories;
+			this.progress = progress;
+			this.visited = visited;
+			this.fileSystem = fileSystem;
+			this.start = start;
+		}
+
+		boolean prunes(Path directory, BasicFileAttributes attrs, int depth) {
+			if (rules == PruneRules.NONE) {
+				return false;
+			}
+			return rules.prunes(root, directory, depth)
+					|| fileSystem != null && !fileSystem.equals(PruneRules.fileSystem(directory, attrs));
+		}
+
+		boolean excludes(Path file) {
+			return rules != PruneRules.NONE && rules.excludes(root, file);
+		}
+
+		/**
+		 * Logs an entry that could not be read and records it in the progress, if any.
+		 */
+		void error(Path path, ScanError.Kind kind, Exception e) {
+			LOGGER.log(Level.FINE, "Skipping unreadable " + path, e);
+			if (progress != null) {
+				progress.error(ScanError.of(path, kind, e));
+			}
+		}
+	}
+
+	/**
+	 * A directory waiting to be listed, linked to its parent so a followed link that
+	 * leads back to an ancestor can be recognized by file key.
+	 */
+	private static final class Directory {
+
+		private final Directory parent;
+		private final Path path;
+		private final int depth;
+
+		/** The directory's file key, or {@code null} where the platform has none. */
+		private final Object key;
+
+		Directory(Directory parent, Path path, int depth, Object key) {
+			this.parent = parent;
+			this.path = path;
+			this.depth = depth;
+			this.key = key;
+		}
+
+		/**
+		 * @return {@code true} if this directory or one of its ancestors has file key {@code key}.
+		 */
+		boolean hasAncestor(Object key) {
+			for (Directory directory = this; directory != null; directory = directory.parent) {
+				if (key.equals(directory.key)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Lists a single directory, reports its files and forks one subtask per subdirectory.
+	 */
+	private static final class DirectoryTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Walk walk;
+		private final transient Directory directory;
+
+		DirectoryTask(Walk walk, Directory directory) {
+			this.walk = walk;
+			this.directory = directory;
+		}
+
+		@Override
+		protected void compute() {
+			List<DirectoryTask> subtasks = new ArrayList<>();
+			listDirectory(walk, directory, entry -> {
+				DirectoryTask task = new DirectoryTask(walk, entry);
+				task.fork();
+				subtasks.add(task);
+			});
+
+			for (DirectoryTask task : subtasks) {
+				task.join();
+			}
+		}
+	}
+
+	/**
+	 * Lists directories on virtual threads. Pending directories wait in a deque, taken
+	 * depth first, and at most {@code concurrency} virtual workers drain it; a worker is
+	 * only started when a directory is queued and no worker is idle. A pending counter
+	 * detects when the last directory has been listed.
+	 */
+	private static final class VirtualScan {
+
+		/** Wakes an idle worker once the walk has ended. */
+		private static final Step END = new Step(null, null);
+
+		private final ExecutorService executor = Executors.newThreadPerTaskExecutor(VIRTUAL_FACTORY);
+		private final BlockingDeque<Step> queue = new LinkedBlockingDeque<>();
+
+		/** Directories queued or being listed. */
+		private final AtomicInteger pending = new AtomicInteger();
+		private final AtomicInteger workers = new AtomicInteger();
+		private final AtomicInteger idle = new AtomicInteger();
+		private final CountDownLatch finished = new CountDownLatch(1);
+		private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		private final int concurrency;
+
+		/** Set when the walk is abandoned, so busy workers take no further directory. */
+		private volatile boolean stopped;
+
+		VirtualScan(int concurrency) {
+			this.concurrency = Math.max(1, concurrency);
+		}
+
+		void run(List<Walk> walks) throws IOException {
+			try {
+				// Held until every root is queued, so the first root to finish cannot end the walk.
+				pending.incrementAndGet();
+				for (Walk walk : walks) {
+					submit(walk, walk.start);
+				}
+				if (pending.decrementAndGet() == 0) {
+					finish();
+				}
+				finished.await();
+			} catch (InterruptedException e) {
+				// Interrupts the idle workers; busy ones stop after their current directory.
+				stopped = true;
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while walking " + walks.get(0).root);
+			}
+			executor.close();
+			if (failure.get() != null) {
+				throw failure.get();
+			}
+		}
+
+		private void submit(Walk walk, Directory directory) {
+			pending.incrementAndGet();
+			queue.addFirst(new Step(walk, directory));
+			if (idle.get() > 0) {
+				return;
+			}
+			for (int count = workers.get(); count < concurrency; count = workers.get()) {
+				if (workers.compareAndSet(count, count + 1)) {
+					executor.execute(VIRTUAL_FACTORY.instrument(this::work));
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Takes and lists queued directories until the walk ends or is interrupted.
+		 */
+		private void work() {
+			try {
+				while (true) {
+					Step step;
+					idle.incrementAndGet();
+					try {
+						step = queue.takeFirst();
+					} finally {
+						idle.decrementAndGet();
+					}
+					if (step == END || stopped) {
+						return;
+					}
+					try {
+						listDirectory(step.walk, step.directory, entry -> submit(step.walk, entry));
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						if (pending.decrementAndGet() == 0) {
+							finish();
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// The walk was abandoned.
+			}
+		}
+
+		/**
+		 * Ends the walk and wakes every worker so it can exit.
+		 */
+		private void finish() {
+			finished.countDown();
+			for (int i = workers.get(); i > 0; i--) {
+				queue.addLast(END);
+			}
+		}
+	}
+}